@@ -16,6 +16,189 @@
 
 package com.jigdraw.draw.dao;
 
+import static com.jigdraw.draw.util.Constants.PACK_DIRECTORY;
+import static com.jigdraw.draw.util.DBUtil.DATABASE_NAME;
+import static com.jigdraw.draw.util.DBUtil.PUZZLES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.TILES_TABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.jigdraw.draw.dao.impl.ImageDaoImpl;
+import com.jigdraw.draw.db.JigsawDB;
+import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.model.enums.Difficulty;
+import com.jigdraw.draw.model.enums.StorageBackend;
+import com.jigdraw.draw.service.JigsawService;
+import com.jigdraw.draw.service.impl.JigsawServiceImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Instrumented test for image dao class
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+@RunWith(AndroidJUnit4.class)
 public class ImageDaoTest {
+    private static final String TAG = "ImageDaoTest";
+    private Context context;
     private ImageDao dao;
-}
\ No newline at end of file
+
+    @Before
+    public void init() {
+        context = InstrumentationRegistry.getTargetContext();
+        dao = new ImageDaoImpl(context);
+    }
+
+    @Test
+    public void testFindTilesHardPuzzle() {
+        JigsawService service = new JigsawServiceImpl(context);
+        long before = context.getDatabasePath(DATABASE_NAME).length();
+        Long id = service.create(createDrawing(1024, 1024), Difficulty.HARD);
+        long after = context.getDatabasePath(DATABASE_NAME).length();
+
+        long start = SystemClock.elapsedRealtime();
+        List<ImageEntity> tiles = dao.findTiles(id);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        Log.d(TAG, "HARD puzzle added " + (after - before) + " bytes to the db, findTiles took " + elapsed + "ms");
+        assertEquals(64, tiles.size());
+        assertNotNull(tiles.get(0).getImage());
+    }
+
+    @Test
+    public void testCompareStorageBackends() {
+        Bitmap drawing = createDrawing(1024, 1024);
+        for (StorageBackend backend : StorageBackend.values()) {
+            ImageDao backendDao = ImageDaoFactory.create(context, backend);
+            long start = SystemClock.elapsedRealtime();
+            Long id = new JigsawServiceImpl(context, backend).create(drawing, Difficulty.HARD);
+            long saved = SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            List<ImageEntity> tiles = backendDao.findTiles(id);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            Log.d(TAG, backend + " saved a HARD puzzle in " + saved + "ms, findTiles took " + elapsed + "ms");
+            assertEquals(64, tiles.size());
+            assertEquals(7, tiles.get(63).getRow());
+            assertEquals(7, tiles.get(63).getCol());
+            assertTrue(tiles.get(0).getImage().sameAs(Bitmap.createBitmap(drawing, 0, 0, 128, 128)));
+            assertEquals(1, backendDao.delete(id));
+        }
+    }
+
+    @Test
+    public void testStorageBackendsReadEachOther() {
+        Bitmap drawing = createDrawing(512, 512);
+        StorageBackend[] backends = StorageBackend.values();
+        for (int i = 0; i < backends.length; i++) {
+            StorageBackend saver = backends[i];
+            StorageBackend reader = backends[(i + 1) % backends.length];
+            ImageDao readerDao = ImageDaoFactory.create(context, reader);
+            Long id = new JigsawServiceImpl(context, saver).create(drawing, Difficulty.EASY);
+
+            String message = "saved by " + saver + ", read by " + reader;
+            assertEquals(message, 2, readerDao.findGridSize(id));
+            List<ImageEntity> tiles = readerDao.findTiles(id);
+            assertEquals(message, 4, tiles.size());
+            assertTrue(message, tiles.get(0).getImage().sameAs(Bitmap.createBitmap(drawing, 0, 0, 256, 256)));
+            assertEquals(message, 1, readerDao.delete(id));
+            assertFalse(message, new File(context.getFilesDir(), PACK_DIRECTORY + File.separator + id + ".pack")
+                    .exists());
+        }
+    }
+
+    @Test
+    public void testCreateWithTilesRollsBackOnFailedTile() {
+        Bitmap drawing = createDrawing(128, 128);
+        ImageEntity original = new ImageEntity(drawing, "rollback", "tiles in the same cell", null);
+        // the second tile takes the same grid cell as the first, the unique index rejects it
+        List<ImageEntity> tiles = Arrays.asList(new ImageEntity(Bitmap.createBitmap(drawing, 0, 0, 64, 64), null, 0, 0),
+                new ImageEntity(Bitmap.createBitmap(drawing, 64, 0, 64, 64), null, 0, 0));
+        SQLiteDatabase db = JigsawDB.getInstance(context).getReadableDatabase();
+        long puzzles = DatabaseUtils.queryNumEntries(db, PUZZLES_TABLE);
+        long tileRows = DatabaseUtils.queryNumEntries(db, TILES_TABLE);
+
+        try {
+            dao.createWithTiles(original, tiles);
+            fail("expected the duplicate tile to fail the save");
+        } catch (SQLException e) {
+            Log.d(TAG, "save failed as expected: " + e.getMessage());
+        }
+
+        assertEquals(puzzles, DatabaseUtils.queryNumEntries(db, PUZZLES_TABLE));
+        assertEquals(tileRows, DatabaseUtils.queryNumEntries(db, TILES_TABLE));
+        for (ImageEntity tile : tiles) {
+            assertNull(tile.getOriginalId());
+        }
+    }
+
+    @Test
+    public void testChunkedOriginalRoundTrip() {
+        Bitmap original = createNoise(4096, 4096);
+        Long id = dao.create(new ImageEntity(original, "noise", "4096x4096 noise", null));
+
+        long start = SystemClock.elapsedRealtime();
+        ImageEntity found = dao.find(id);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        Log.d(TAG, "4096x4096 original read back from chunks in " + elapsed + "ms");
+        assertNotNull(found.getImage());
+        assertTrue(original.sameAs(found.getImage()));
+        assertEquals(1, dao.delete(id));
+    }
+
+    /**
+     * Create a gray noise drawing that compresses poorly, well over the cursor window size as a PNG
+     */
+    public static Bitmap createNoise(int width, int height) {
+        Random random = new Random(42);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = random.nextInt(16) * 17;
+                row[x] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Create a drawing with enough detail that the compressed size is not trivial
+     */
+    public static Bitmap createDrawing(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = 0xFF000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x ^ y) & 0xFF);
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.db;
+
+import static com.jigdraw.draw.dao.ImageDaoTest.createDrawing;
+import static com.jigdraw.draw.dao.ImageDaoTest.createNoise;
+import static com.jigdraw.draw.util.DBUtil.DATABASE_VERSION;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_CHUNKS_TABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.jigdraw.draw.util.Base64Util;
+import com.jigdraw.draw.util.BitmapUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Instrumented test for the schema migrations, each test writes a database in an old schema and upgrades it by opening
+ * it with {@link JigsawDB}
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+@RunWith(AndroidJUnit4.class)
+public class DBMigrationsTest {
+    private static final String NAME = "jigsaw-migration-test.db";
+
+    /** the version 1 table, images are base64 text */
+    private static final String CREATE_V1_TABLE = "create table jigsaw_images (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + " name TEXT, img TEXT, desc TEXT, original INTEGER)";
+
+    private static final String INSERT_V1_ROW = "insert into jigsaw_images (name, img, desc, original)"
+            + " values (?, ?, ?, ?)";
+
+    private Context context;
+
+    @Before
+    public void init() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(NAME);
+    }
+
+    @After
+    public void cleanUp() {
+        context.deleteDatabase(NAME);
+    }
+
+    @Test
+    public void testUpgradeFromVersion1() {
+        Bitmap drawing = createDrawing(256, 256);
+        int grid = 4;
+        int size = 256 / grid;
+
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(NAME), null);
+        long puzzleId;
+        try {
+            v1.execSQL(CREATE_V1_TABLE);
+            puzzleId = insertV1(v1, "drawing", drawing, "a v1 drawing", null);
+            for (int y = 0; y < 256; y += size) {
+                for (int x = 0; x < 256; x += size) {
+                    insertV1(v1, "tile-" + x + "-" + y + ".png", Bitmap.createBitmap(drawing, x, y, size, size),
+                            null, puzzleId);
+                }
+            }
+            v1.setVersion(1);
+        } finally {
+            v1.close();
+        }
+
+        JigsawDB helper = new JigsawDB(context, NAME);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(DATABASE_VERSION, db.getVersion());
+
+            Cursor puzzle = db.rawQuery("select name, desc, img, thumb, chunks from puzzles where id = ?",
+                    new String[]{String.valueOf(puzzleId)});
+            try {
+                assertTrue(puzzle.moveToFirst());
+                assertEquals("drawing", puzzle.getString(0));
+                assertEquals("a v1 drawing", puzzle.getString(1));
+                assertTrue(drawing.sameAs(BitmapUtil.bytesToBitmap(puzzle.getBlob(2))));
+                assertNotNull(BitmapUtil.bytesToBitmap(puzzle.getBlob(3)));
+                assertEquals(0, puzzle.getInt(4));
+            } finally {
+                puzzle.close();
+            }
+
+            Cursor tiles = db.rawQuery("select grid_row, grid_col, img from tiles where puzzle_id = ?"
+                    + " order by grid_row, grid_col", new String[]{String.valueOf(puzzleId)});
+            try {
+                assertEquals(grid * grid, tiles.getCount());
+                for (int i = 0; tiles.moveToNext(); i++) {
+                    int row = tiles.getInt(0);
+                    int col = tiles.getInt(1);
+                    assertEquals(i / grid, row);
+                    assertEquals(i % grid, col);
+                    Bitmap expected = Bitmap.createBitmap(drawing, col * size, row * size, size, size);
+                    assertTrue(expected.sameAs(BitmapUtil.bytesToBitmap(tiles.getBlob(2))));
+                }
+            } finally {
+                tiles.close();
+            }
+
+            Cursor oldTable = db.rawQuery("select name from sqlite_master where name like 'jigsaw_images%'", null);
+            try {
+                assertFalse(oldTable.moveToFirst());
+            } finally {
+                oldTable.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void testUpgradeOversizedImageFromVersion1() throws IOException {
+        // the base64 text and the PNG bytes it wraps are both larger than a cursor window
+        Bitmap noise = createNoise(3072, 3072);
+
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(NAME), null);
+        long puzzleId;
+        try {
+            v1.execSQL(CREATE_V1_TABLE);
+            puzzleId = insertV1(v1, "noise", noise, "oversized v1 drawing", null);
+            v1.setVersion(1);
+        } finally {
+            v1.close();
+        }
+
+        JigsawDB helper = new JigsawDB(context, NAME);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            Cursor puzzle = db.rawQuery("select img is null, thumb, chunks from puzzles where id = ?",
+                    new String[]{String.valueOf(puzzleId)});
+            int chunks;
+            try {
+                assertTrue(puzzle.moveToFirst());
+                assertEquals(1, puzzle.getInt(0));
+                assertNotNull(BitmapUtil.bytesToBitmap(puzzle.getBlob(1)));
+                chunks = puzzle.getInt(2);
+                assertTrue(chunks > 1);
+            } finally {
+                puzzle.close();
+            }
+
+            InputStream in = BlobChunks.open(db, PUZZLE_CHUNKS_TABLE, puzzleId, chunks);
+            try {
+                assertTrue(noise.sameAs(BitmapUtil.streamToBitmap(in)));
+            } finally {
+                in.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    static long insertV1(SQLiteDatabase db, String name, Bitmap image, String desc, Long original) {
+        Object[] args = {name, Base64Util.bitMapToBase64(image), desc, original};
+        db.execSQL(INSERT_V1_ROW, args);
+        Cursor cursor = db.rawQuery("select last_insert_rowid()", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
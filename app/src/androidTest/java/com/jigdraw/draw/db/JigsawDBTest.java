@@ -16,6 +16,102 @@
 
 package com.jigdraw.draw.db;
 
+import static com.jigdraw.draw.dao.ImageDaoTest.createDrawing;
+import static com.jigdraw.draw.util.DBUtil.INSERT_PUZZLE_ROW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.jigdraw.draw.dao.ImageDao;
+import com.jigdraw.draw.dao.ImageDaoFactory;
+import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.model.enums.Difficulty;
+import com.jigdraw.draw.model.enums.StorageBackend;
+import com.jigdraw.draw.service.impl.JigsawServiceImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumented test for the jigsaw database helper
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+@RunWith(AndroidJUnit4.class)
 public class JigsawDBTest {
+    private static final String TAG = "JigsawDBTest";
+    private Context context;
     private JigsawDB db;
-}
\ No newline at end of file
+
+    @Before
+    public void init() {
+        context = InstrumentationRegistry.getTargetContext();
+        db = JigsawDB.getInstance(context);
+    }
+
+    @Test
+    public void testSingleInstance() {
+        assertTrue(db == JigsawDB.getInstance(context.getApplicationContext()));
+        assertTrue(db.getWritableDatabase().isWriteAheadLoggingEnabled());
+    }
+
+    @Test
+    public void testReadsNotBlockedByWriteTransaction() throws InterruptedException {
+        ImageDao dao = ImageDaoFactory.create(context, StorageBackend.SQLITE);
+        Long id = new JigsawServiceImpl(context, StorageBackend.SQLITE).create(createDrawing(512, 512),
+                Difficulty.MEDIUM);
+
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch readsDone = new CountDownLatch(1);
+        final AtomicLong uncommittedId = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            SQLiteDatabase wdb = db.getWritableDatabase();
+            wdb.beginTransactionNonExclusive();
+            SQLiteStatement insert = wdb.compileStatement(INSERT_PUZZLE_ROW);
+            try {
+                insert.bindString(2, "uncommitted");
+                insert.bindLong(6, 0);
+                uncommittedId.set(insert.executeInsert());
+                writing.countDown();
+                readsDone.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                insert.close();
+                wdb.endTransaction();
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        long start = SystemClock.elapsedRealtime();
+        List<ImageEntity> history = dao.getHistoryPage(null, 20);
+        List<ImageEntity> tiles = dao.findTiles(id);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        boolean writerStillOpen = writer.isAlive();
+        readsDone.countDown();
+        writer.join();
+
+        Log.d(TAG, "reads during an open write transaction took " + elapsed + "ms");
+        assertTrue(writerStillOpen);
+        assertEquals(16, tiles.size());
+        for (ImageEntity entity : history) {
+            assertFalse(entity.getId() == uncommittedId.get());
+        }
+        dao.delete(id);
+    }
+}
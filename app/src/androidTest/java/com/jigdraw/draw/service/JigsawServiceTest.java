@@ -16,6 +16,81 @@
 
 package com.jigdraw.draw.service;
 
+import static com.jigdraw.draw.dao.ImageDaoTest.createDrawing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.jigdraw.draw.dao.ImageDao;
+import com.jigdraw.draw.dao.ImageDaoFactory;
+import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.model.enums.Difficulty;
+import com.jigdraw.draw.model.enums.StorageBackend;
+import com.jigdraw.draw.service.impl.JigsawServiceImpl;
+import com.jigdraw.draw.util.ThreadPools;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Instrumented test for jigsaw service class
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+@RunWith(AndroidJUnit4.class)
 public class JigsawServiceTest {
-    private JigsawService service;
-}
\ No newline at end of file
+    private static final String TAG = "JigsawServiceTest";
+    private Context context;
+    private ImageDao dao;
+
+    @Before
+    public void init() {
+        context = InstrumentationRegistry.getTargetContext();
+        dao = ImageDaoFactory.create(context, StorageBackend.SQLITE);
+    }
+
+    @Test
+    public void testParallelEncodingMatchesSerial() {
+        Bitmap drawing = createDrawing(2048, 2048);
+        ExecutorService serial = Executors.newSingleThreadExecutor();
+        try {
+            Long serialId = timeCreate("serial", serial, drawing);
+            Long parallelId = timeCreate(ThreadPools.CORES + " cores", ThreadPools.compute(), drawing);
+
+            List<ImageEntity> serialTiles = dao.findTiles(serialId);
+            List<ImageEntity> parallelTiles = dao.findTiles(parallelId);
+            assertEquals(64, parallelTiles.size());
+            for (int i = 0; i < serialTiles.size(); i++) {
+                assertEquals(serialTiles.get(i).getRow(), parallelTiles.get(i).getRow());
+                assertEquals(serialTiles.get(i).getCol(), parallelTiles.get(i).getCol());
+                assertEquals(serialTiles.get(i).getId() - serialTiles.get(0).getId(),
+                        parallelTiles.get(i).getId() - parallelTiles.get(0).getId());
+                assertTrue(serialTiles.get(i).getImage().sameAs(parallelTiles.get(i).getImage()));
+            }
+            dao.delete(serialId);
+            dao.delete(parallelId);
+        } finally {
+            serial.shutdown();
+        }
+    }
+
+    private Long timeCreate(String label, ExecutorService encoder, Bitmap drawing) {
+        JigsawService service = new JigsawServiceImpl(context, StorageBackend.SQLITE, encoder);
+        long start = SystemClock.elapsedRealtime();
+        Long id = service.create(drawing, Difficulty.HARD);
+        Log.d(TAG, label + " HARD puzzle created in " + (SystemClock.elapsedRealtime() - start) + "ms");
+
+        return id;
+    }
+}
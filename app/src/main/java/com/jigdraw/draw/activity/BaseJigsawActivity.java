@@ -19,14 +19,21 @@ package com.jigdraw.draw.activity;
 import android.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.content.Intent;
+import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 
 import com.jigdraw.draw.R;
+import com.jigdraw.draw.cache.BitmapMemoryBudget;
+import com.jigdraw.draw.model.enums.EvictionPriority;
+import com.jigdraw.draw.tasks.ScheduledTask;
+import com.jigdraw.draw.tasks.TaskScheduler;
 
 /**
- * Base activity class for activities that share the menu bar
+ * Base activity class for activities that share the menu bar.  The loaders an activity scheduled are cancelled and the
+ * bitmap holders it registered with the {@link BitmapMemoryBudget} are dropped when it is destroyed.  Work that must
+ * outlive the screen, like saving a puzzle, is scheduled for the application instead.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
@@ -35,6 +42,19 @@ abstract class BaseJigsawActivity
     /** Class name for logging */
     private static final String TAG = "BaseJigsawActivity";
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        BitmapMemoryBudget.getInstance().install(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        TaskScheduler.getInstance().cancelAll(this);
+        BitmapMemoryBudget.getInstance().unregisterAll(this);
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
@@ -62,4 +82,35 @@ abstract class BaseJigsawActivity
             bar.setDisplayHomeAsUpEnabled(true);
         }
     }
+
+    /**
+     * Run a task for this activity, it is cancelled when the activity is destroyed
+     *
+     * @param task the task to run
+     */
+    protected void schedule(ScheduledTask<?> task) {
+        TaskScheduler.getInstance().submit(this, task);
+    }
+
+    /**
+     * Run a task for the application, it carries on when this activity is destroyed by a rotation or by leaving the
+     * screen.  The task must not hold on to the activity.
+     *
+     * @param task the task to run
+     */
+    protected void scheduleForApplication(ScheduledTask<?> task) {
+        TaskScheduler.getInstance().submit(getApplication(), task);
+    }
+
+    /**
+     * Register a holder of bitmaps of this activity with the memory budget, it is dropped when the activity is
+     * destroyed
+     *
+     * @param name the name the bytes are reported under
+     * @param owner the holder of bitmaps
+     * @param priority when the holder releases its bitmaps
+     */
+    protected void trackBitmaps(String name, BitmapMemoryBudget.Owner owner, EvictionPriority priority) {
+        BitmapMemoryBudget.getInstance().register(this, name, owner, priority);
+    }
 }
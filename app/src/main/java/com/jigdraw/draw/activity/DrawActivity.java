@@ -257,10 +257,11 @@ public class DrawActivity
         drawView.setDrawingCacheEnabled(true);
         Bitmap bitmap = drawView.getDrawingCache();
 
-        JigsawGenerator task = new JigsawGenerator(getApplicationContext(), Difficulty.fromValue(which));
+        JigsawGenerator task = new JigsawGenerator(getApplicationContext(), Difficulty.fromValue(which),
+                bitmap.copy(bitmap.getConfig(), true));
 
         shortToast(getApplicationContext(), "Loading...");
-        task.execute(bitmap.copy(bitmap.getConfig(), true));
+        scheduleForApplication(task);
         drawView.destroyDrawingCache();
     }
 
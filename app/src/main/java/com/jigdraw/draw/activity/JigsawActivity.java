@@ -16,17 +16,29 @@
 
 package com.jigdraw.draw.activity;
 
+import static com.jigdraw.draw.util.Constants.BOARD_TYPE_KEY;
+import static com.jigdraw.draw.util.Constants.PREFERENCES_NAME;
+
+import android.content.Context;
 import android.os.Bundle;
 import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Chronometer;
+import android.widget.GridView;
+import android.widget.ListAdapter;
 
 import com.beardedhen.androidbootstrap.FontAwesomeText;
 import com.jigdraw.draw.R;
+import com.jigdraw.draw.adapter.JigsawBoardAdapter;
+import com.jigdraw.draw.adapter.JigsawGridAdapter;
 import com.jigdraw.draw.model.LongParcelable;
+import com.jigdraw.draw.model.enums.BoardType;
 import com.jigdraw.draw.model.enums.JigsawState;
 import com.jigdraw.draw.tasks.JigsawLoader;
+import com.jigdraw.draw.views.JigsawBoardView;
 import com.jigdraw.draw.views.JigsawGridView;
 
 /**
@@ -63,6 +75,19 @@ public class JigsawActivity
         init();
     }
 
+    @Override
+    protected void onDestroy() {
+        ListAdapter gridAdapter = ((JigsawGridView) findViewById(R.id.jigsaw_grid)).getAdapter();
+        if (gridAdapter instanceof JigsawGridAdapter) {
+            ((JigsawGridAdapter) gridAdapter).close();
+        }
+        RecyclerView.Adapter boardAdapter = ((JigsawBoardView) findViewById(R.id.jigsaw_board)).getAdapter();
+        if (boardAdapter instanceof JigsawBoardAdapter) {
+            ((JigsawBoardAdapter) boardAdapter).close();
+        }
+        super.onDestroy();
+    }
+
     /**
      * Initialize all the views
      */
@@ -74,27 +99,94 @@ public class JigsawActivity
     }
 
     /**
-     * Initialize the jigsaw grid view
+     * Initialize the jigsaw board, the grid view or the recycler board depending on the preferences
      */
     private void initViews() {
-        Log.d(TAG, "initializing jigsaw grid view");
-        final JigsawGridView gridView = findViewById(R.id.jigsaw_grid);
-
-        JigsawLoader task = new JigsawLoader(getApplicationContext(), gridView);
+        Long id = null;
         Bundle bundle = getIntent().getExtras();
-
         if(bundle != null) {
             LongParcelable parcelable = bundle.getParcelable(ORIGINAL_IMG_ID);
             if(parcelable != null) {
-                task.execute(parcelable.getData());
+                id = parcelable.getData();
             }
         }
 
+        if (getBoardType() == BoardType.RECYCLER) {
+            initBoardView(id);
+        } else {
+            initGridView(id);
+        }
+    }
+
+    /**
+     * Initialize the jigsaw grid view
+     *
+     * @param id the original image id or null if there is none
+     */
+    private void initGridView(Long id) {
+        Log.d(TAG, "initializing jigsaw grid view");
+        final JigsawGridView gridView = findViewById(R.id.jigsaw_grid);
+        if (id != null) {
+            loadTiles(gridView, id);
+        }
+
         gridView.setOnItemLongClickListener(onItemLongClickListener(gridView));
         gridView.setOnDropListener(onDropListener(gridView));
         gridView.setOnDragListener(onDragListener());
     }
 
+    /**
+     * Initialize the recycler board view in place of the grid view
+     *
+     * @param id the original image id or null if there is none
+     */
+    private void initBoardView(Long id) {
+        Log.d(TAG, "initializing jigsaw board view");
+        findViewById(R.id.jigsaw_grid).setVisibility(View.GONE);
+        JigsawBoardView boardView = findViewById(R.id.jigsaw_board);
+        boardView.setVisibility(View.VISIBLE);
+        if (id != null) {
+            loadTiles(boardView, id);
+        }
+
+        boardView.setOnDropListener(() -> Log.d(TAG, "dropped element"));
+        boardView.setOnDragListener(onDragListener());
+    }
+
+    /**
+     * Load the tiles once the board is laid out, its width and column spacing are read here on the main thread so that
+     * the loader decodes the tiles to the cells the board shows them in
+     *
+     * @param board the grid view or the recycler board
+     * @param id the original image id
+     */
+    private void loadTiles(final View board, final Long id) {
+        board.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                board.getViewTreeObserver().removeOnPreDrawListener(this);
+                int width = board.getWidth() - board.getPaddingLeft() - board.getPaddingRight();
+                if (width <= 0) {
+                    width = getResources().getDisplayMetrics().widthPixels;
+                }
+                int spacing = board instanceof GridView ? ((GridView) board).getHorizontalSpacing() : 0;
+                schedule(new JigsawLoader(getApplicationContext(), board, id, width, spacing));
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Get the board type from the preferences
+     *
+     * @return the board type
+     */
+    private BoardType getBoardType() {
+        String name = getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getString(BOARD_TYPE_KEY, BoardType.GRID.name());
+        return BoardType.fromName(name);
+    }
+
     /**
      * Initialize the chronometer
      */
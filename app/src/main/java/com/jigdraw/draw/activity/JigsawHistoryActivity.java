@@ -16,6 +16,9 @@
 
 package com.jigdraw.draw.activity;
 
+import static com.jigdraw.draw.util.Constants.HISTORY_PAGE_SIZE;
+import static com.jigdraw.draw.util.Constants.HISTORY_PREFETCH_DISTANCE;
+import static com.jigdraw.draw.util.Constants.HISTORY_RESIDENT_PAGES;
 import static com.jigdraw.draw.util.ToastUtil.shortToast;
 
 import android.os.Bundle;
@@ -25,6 +28,8 @@ import android.widget.AdapterView.OnItemLongClickListener;
 import android.widget.ListView;
 
 import com.jigdraw.draw.R;
+import com.jigdraw.draw.adapter.JigsawListAdapter;
+import com.jigdraw.draw.model.enums.EvictionPriority;
 import com.jigdraw.draw.tasks.JigsawHistoryLoader;
 
 /**
@@ -38,6 +43,9 @@ public class JigsawHistoryActivity
     /** Class name for logging */
     private static final String TAG = "JigsawHistoryActivity";
 
+    /** The paged history adapter */
+    private JigsawListAdapter adapter;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         Log.d(TAG, "Starting jigsaw history activity...");
@@ -45,6 +53,12 @@ public class JigsawHistoryActivity
         init();
     }
 
+    @Override
+    protected void onDestroy() {
+        adapter.close();
+        super.onDestroy();
+    }
+
     /**
      * Initialize all the views
      */
@@ -60,11 +74,15 @@ public class JigsawHistoryActivity
     private void initViews() {
         Log.d(TAG, "initializing history list view...");
         ListView lv = findViewById(R.id.history_list);
-        JigsawHistoryLoader task = new JigsawHistoryLoader
-                (getApplicationContext(), lv);
+        adapter = new JigsawListAdapter(getApplicationContext(), HISTORY_PAGE_SIZE,
+                HISTORY_RESIDENT_PAGES, HISTORY_PREFETCH_DISTANCE);
+        adapter.setOnPageRequestListener((page, beforeId) ->
+                schedule(new JigsawHistoryLoader(getApplicationContext(), adapter, page, beforeId)));
+        lv.setAdapter(adapter);
+        trackBitmaps(TAG, adapter, EvictionPriority.RELOADABLE);
 
         shortToast(getApplicationContext(), "Loading drawing history...");
-        task.execute();
+        adapter.start();
 
         lv.setLongClickable(true);
         lv.setOnItemLongClickListener(onItemLongClickListener());
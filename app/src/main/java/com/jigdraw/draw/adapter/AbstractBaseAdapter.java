@@ -18,37 +18,44 @@ package com.jigdraw.draw.adapter;
 
 import android.widget.BaseAdapter;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.jigdraw.draw.model.BoardModel;
 
+/**
+ * Base of the orderable adapters, the stable id of an item is its number in the {@link BoardModel}
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
 abstract class AbstractBaseAdapter
         extends BaseAdapter
         implements OrderableAdapter {
 
     private static final int INVALID_ID = -1;
-    private Long nextStableId = 0L;
-    private Map<Object, Long> mIdMap = new HashMap<>();
+    private BoardModel board = new BoardModel(0);
 
     @Override
     public final boolean hasStableIds() {
         return true;
     }
 
-    void addAllStableId(List<?> items) {
-        items.forEach(this::addStableId);
+    /**
+     * Number the items in their current order
+     *
+     * @param count the number of items
+     */
+    void initBoard(int count) {
+        board = new BoardModel(count);
     }
 
-    private void addStableId(Object item) {
-        mIdMap.put(item, nextStableId++);
+    @Override
+    public BoardModel getBoardModel() {
+        return board;
     }
 
     @Override
     public final long getItemId(int position) {
-        if (position < 0 || position >= mIdMap.size()) {
+        if (position < 0 || position >= board.size()) {
             return INVALID_ID;
         }
-        Object item = getItem(position);
-        return mIdMap.get(item);
+        return board.tileAt(position);
     }
 }
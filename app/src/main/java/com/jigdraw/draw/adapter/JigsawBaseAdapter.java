@@ -19,9 +19,14 @@ package com.jigdraw.draw.adapter;
 import android.content.Context;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
+/**
+ * Base of the jigsaw grid adapters, the items stay in the order they were given and the {@link
+ * com.jigdraw.draw.model.BoardModel} holds where each of them is on the board
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
 abstract class JigsawBaseAdapter
         extends AbstractBaseAdapter {
 
@@ -36,14 +41,14 @@ abstract class JigsawBaseAdapter
     }
 
     private void init(List<?> items) {
-        addAllStableId(items);
         this.items.addAll(items);
+        initBoard(items.size());
     }
 
     @Override
     public void reorderItems(int originalPosition, int newPosition) {
         if (newPosition < getCount()) {
-            Collections.swap(items, originalPosition, newPosition);
+            getBoardModel().swap(originalPosition, newPosition);
             notifyDataSetChanged();
         }
     }
@@ -55,7 +60,7 @@ abstract class JigsawBaseAdapter
 
     @Override
     public Object getItem(int position) {
-        return items.get(position);
+        return items.get(getBoardModel().tileAt(position));
     }
 
     @Override
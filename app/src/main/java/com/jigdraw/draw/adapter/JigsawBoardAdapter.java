@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.adapter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.jigdraw.draw.cache.BitmapMemoryBudget;
+import com.jigdraw.draw.cache.BitmapPool;
+import com.jigdraw.draw.model.BoardModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter for the recycler view puzzle board.  Every view is bound to the tile at its position when it is reused, and a
+ * swap of two tiles only moves those two views instead of rebinding the whole board.  The arrangement is a {@link
+ * BoardModel} and a tile's number in it is its stable id.  Like {@link JigsawGridAdapter} the tiles are pinned in the
+ * {@link BitmapMemoryBudget} and held in the {@link BitmapPool} until {@link #close()}.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class JigsawBoardAdapter
+        extends RecyclerView.Adapter<JigsawBoardAdapter.TileHolder>
+        implements OrderableAdapter, BitmapMemoryBudget.Owner {
+
+    private Context context;
+    private List<Bitmap> items;
+    private BoardModel board;
+    private int columns;
+    private int cellWidth;
+
+    /**
+     * Create new board adapter
+     *
+     * @param context the context
+     * @param items the tiles
+     * @param columns the number of columns
+     * @param cellWidth the width of a cell in pixels, the tiles are shown scaled to it
+     */
+    public JigsawBoardAdapter(Context context, List<Bitmap> items, int columns, int cellWidth) {
+        this.context = context;
+        this.items = new ArrayList<>(items);
+        this.board = new BoardModel(items.size());
+        this.columns = columns;
+        this.cellWidth = cellWidth;
+        setHasStableIds(true);
+        BitmapPool.getInstance().acquire(this.items);
+    }
+
+    /**
+     * Give the tiles back to the pool, called when the screen showing them closes
+     */
+    public void close() {
+        BitmapPool.getInstance().release(items);
+    }
+
+    @Override
+    public TileHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        ImageView view = new ImageView(context);
+        view.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        view.setPadding(1, 1, 1, 1);
+
+        return new TileHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(TileHolder holder, int position) {
+        Bitmap d = items.get(board.tileAt(position));
+        holder.image.setLayoutParams(new RecyclerView.LayoutParams(cellWidth,
+                Math.max(1, Math.round((float) d.getHeight() * cellWidth / d.getWidth()))));
+        holder.image.setImageDrawable(new BitmapDrawable(context.getResources(), d));
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return board.tileAt(position);
+    }
+
+    /**
+     * Swap the tiles at the two positions, dispatched as the two moves that make up the swap
+     *
+     * @param originalPosition the position of the dragged tile
+     * @param newPosition the position it is dropped on
+     */
+    @Override
+    public void reorderItems(int originalPosition, int newPosition) {
+        if (newPosition >= getItemCount() || newPosition == originalPosition) {
+            return;
+        }
+        board.swap(originalPosition, newPosition);
+
+        notifyItemMoved(originalPosition, newPosition);
+        if (Math.abs(newPosition - originalPosition) > 1) {
+            int displaced = newPosition > originalPosition ? newPosition - 1 : newPosition + 1;
+            notifyItemMoved(displaced, originalPosition);
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns;
+    }
+
+    @Override
+    public boolean canReorder(int position) {
+        return true;
+    }
+
+    @Override
+    public BoardModel getBoardModel() {
+        return board;
+    }
+
+    @Override
+    public long getByteCount() {
+        long bytes = 0;
+        for (Bitmap item : items) {
+            bytes += item.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+        // the tiles can't be rebuilt without losing the user's arrangement
+    }
+
+    /**
+     * Holder of the view of a tile
+     */
+    public static class TileHolder
+            extends RecyclerView.ViewHolder {
+        private final ImageView image;
+
+        TileHolder(ImageView image) {
+            super(image);
+            this.image = image;
+        }
+    }
+}
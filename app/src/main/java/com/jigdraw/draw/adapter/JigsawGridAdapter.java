@@ -24,23 +24,61 @@ import android.view.ViewGroup;
 import android.widget.GridView;
 import android.widget.ImageView;
 
+import com.jigdraw.draw.cache.BitmapMemoryBudget;
+import com.jigdraw.draw.cache.BitmapPool;
+
 import java.util.List;
 
 /**
- * Adapter for our jigsaw puzzle grid view
+ * Adapter for our jigsaw puzzle grid view.  The tiles are pinned in the {@link BitmapMemoryBudget}: they hold the
+ * user's arrangement of the puzzle so they are accounted for but never released.  The adapter holds its tiles in the
+ * {@link BitmapPool} until {@link #close()}, when its screen closes.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
 public class JigsawGridAdapter
-        extends JigsawBaseAdapter {
+        extends JigsawBaseAdapter
+        implements BitmapMemoryBudget.Owner {
 
     private Context context;
     private List<Bitmap> items;
+    private int cellWidth;
 
-    public JigsawGridAdapter(Context context, List<Bitmap> items, int count) {
+    /**
+     * Create new grid adapter
+     *
+     * @param context the context
+     * @param items the tiles
+     * @param count the number of columns
+     * @param cellWidth the width of a cell in pixels, the tiles are shown scaled to it
+     */
+    public JigsawGridAdapter(Context context, List<Bitmap> items, int count, int cellWidth) {
         super(context, items, count);
         this.context = context;
         this.items = items;
+        this.cellWidth = cellWidth;
+        BitmapPool.getInstance().acquire(items);
+    }
+
+    /**
+     * Give the tiles back to the pool, called when the screen showing them closes
+     */
+    public void close() {
+        BitmapPool.getInstance().release(items);
+    }
+
+    @Override
+    public long getByteCount() {
+        long bytes = 0;
+        for (Bitmap item : items) {
+            bytes += item.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+        // the tiles can't be rebuilt without losing the user's arrangement
     }
 
     @Override
@@ -50,18 +88,26 @@ public class JigsawGridAdapter
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        return convertView == null ? newView(position) : (ImageView) convertView;
-    }
+        ImageView view = convertView == null ? newView() : (ImageView) convertView;
+        bindView(view, (Bitmap) getItem(position));
 
-    private ImageView newView(int position) {
-        Bitmap d = items.get(position);
+        return view;
+    }
 
+    private ImageView newView() {
         ImageView view = new ImageView(context);
         view.setScaleType(ImageView.ScaleType.CENTER_CROP);
-        view.setLayoutParams(new GridView.LayoutParams(d.getWidth(), d.getHeight()));
         view.setPadding(1, 1, 1, 1);
-        view.setImageDrawable(new BitmapDrawable(context.getResources(), d));
 
         return view;
     }
+
+    /**
+     * Bind a view to the tile now at its position, reused views showed another tile before the last swap
+     */
+    private void bindView(ImageView view, Bitmap d) {
+        view.setLayoutParams(new GridView.LayoutParams(cellWidth,
+                Math.max(1, Math.round((float) d.getHeight() * cellWidth / d.getWidth()))));
+        view.setImageDrawable(new BitmapDrawable(context.getResources(), d));
+    }
 }
@@ -16,57 +16,314 @@
 
 package com.jigdraw.draw.adapter;
 
+import static com.jigdraw.draw.util.Constants.THUMBNAIL_SIZE;
+
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.ListView;
 
+import com.jigdraw.draw.cache.BitmapMemoryBudget;
+import com.jigdraw.draw.cache.BitmapPool;
+import com.jigdraw.draw.model.ImageEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Adapter for our jigsaw puzzle drawing list history view
+ * Adapter for our jigsaw puzzle drawing list history view.  The history is loaded one page at a time as the user
+ * scrolls towards the end of the list, and only the thumbnails of the pages around the visible one are kept in memory.
+ * The ids of every loaded page are kept so that an evicted page can be loaded again when the user scrolls back to it.
+ * Under memory pressure the {@link BitmapMemoryBudget} has every page evicted, the visible ones are loaded again.  The
+ * thumbnails of a page are held in the {@link BitmapPool} while it is resident and go back to it when it is evicted,
+ * once the views still showing them are unbound so that the pool never reuses a bitmap that is being drawn.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
 public class JigsawListAdapter
-        extends JigsawBaseAdapter {
+        extends BaseAdapter
+        implements BitmapMemoryBudget.Owner {
 
     private Context context;
-    private List<Bitmap> items;
+    private List<Page> pages = new ArrayList<>();
+    private List<ImageView> views = new ArrayList<>();
+    private OnPageRequestListener pageRequestListener;
+    private int pageSize;
+    private int residentPages;
+    private int prefetchDistance;
+    private boolean loadingNextPage;
+    private boolean endReached;
 
-    public JigsawListAdapter(Context context, List<Bitmap> items, int count) {
-        super(context, items, count);
+    /**
+     * Create new paged history adapter
+     *
+     * @param context the context
+     * @param pageSize the number of images in a page
+     * @param residentPages the maximum number of pages with thumbnails in memory
+     * @param prefetchDistance how close to the end of the list the next page is requested
+     */
+    public JigsawListAdapter(Context context, int pageSize, int residentPages, int prefetchDistance) {
         this.context = context;
-        this.items = items;
+        this.pageSize = pageSize;
+        this.residentPages = residentPages;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    public void setOnPageRequestListener(OnPageRequestListener listener) {
+        this.pageRequestListener = listener;
+    }
+
+    /**
+     * Request the first page of history
+     */
+    public void start() {
+        requestNextPage();
+    }
+
+    /**
+     * Called on the main thread with the result of a page request
+     *
+     * @param page the index of the page
+     * @param entities the images of the page
+     */
+    public void onPageLoaded(int page, List<ImageEntity> entities) {
+        if (page == pages.size()) {
+            loadingNextPage = false;
+            endReached = entities.size() < pageSize;
+            if (!entities.isEmpty()) {
+                pages.add(new Page(beforeId(page), entities));
+            }
+        } else if (page < pages.size()) {
+            unbind(pages.get(page).images);
+            pages.get(page).restore(entities);
+        }
+        trimPages(page);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Give all the thumbnails back to the pool, called when the screen showing them closes
+     */
+    public void close() {
+        for (Page page : pages) {
+            evict(page);
+        }
     }
 
     @Override
-    public boolean canReorder(int position) {
-        return false;
+    public long getByteCount() {
+        long bytes = 0;
+        for (Page page : pages) {
+            bytes += page.byteCount();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+        for (Page page : pages) {
+            evict(page);
+        }
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public int getCount() {
+        return pages.isEmpty() ? 0 : (pages.size() - 1) * pageSize + pages.get(pages.size() - 1).size();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return pages.get(position / pageSize).images[position % pageSize];
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return pages.get(position / pageSize).ids[position % pageSize];
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        ImageView view;
-        if (convertView == null) {
-            view = newView(position);
-        } else {
-            view = (ImageView) convertView;
+        int page = position / pageSize;
+        if (!pages.get(page).resident) {
+            requestPage(page);
+        }
+        if (position >= getCount() - prefetchDistance) {
+            requestNextPage();
         }
+        trimPages(page);
+
+        ImageView view = convertView == null ? newView() : (ImageView) convertView;
+        bindView(view, (Bitmap) getItem(position));
 
         return view;
     }
 
-    private ImageView newView(int position) {
-        Bitmap d = items.get(position);
+    private ImageView newView() {
         ImageView view = new ImageView(context);
         view.setScaleType(ImageView.ScaleType.CENTER_CROP);
-        view.setLayoutParams(new ListView.LayoutParams(d.getWidth(), d.getHeight()));
-        view.setImageDrawable(new BitmapDrawable(context.getResources(), d));
+        views.add(view);
 
         return view;
     }
+
+    private void bindView(ImageView view, Bitmap d) {
+        if (d == null) {
+            view.setLayoutParams(new ListView.LayoutParams(THUMBNAIL_SIZE, THUMBNAIL_SIZE));
+            view.setImageDrawable(null);
+        } else {
+            view.setLayoutParams(new ListView.LayoutParams(d.getWidth(), d.getHeight()));
+            view.setImageDrawable(new BitmapDrawable(context.getResources(), d));
+        }
+    }
+
+    private void requestNextPage() {
+        if (loadingNextPage || endReached || pageRequestListener == null) {
+            return;
+        }
+        loadingNextPage = true;
+        pageRequestListener.onPageRequested(pages.size(), beforeId(pages.size()));
+    }
+
+    private void requestPage(int page) {
+        Page p = pages.get(page);
+        if (p.loading || pageRequestListener == null) {
+            return;
+        }
+        p.loading = true;
+        pageRequestListener.onPageRequested(page, p.beforeId);
+    }
+
+    private Long beforeId(int page) {
+        return page == 0 ? null : pages.get(page - 1).lastId();
+    }
+
+    /**
+     * Drop the thumbnails of the pages too far from the given page
+     *
+     * @param center the page currently shown
+     */
+    private void trimPages(int center) {
+        int reach = residentPages / 2;
+        for (int i = 0; i < pages.size(); i++) {
+            if (Math.abs(i - center) > reach) {
+                evict(pages.get(i));
+            }
+        }
+    }
+
+    /**
+     * Give the thumbnails of a page back to the pool, after unbinding the views showing them
+     *
+     * @param page the page
+     */
+    private void evict(Page page) {
+        if (page.resident) {
+            unbind(page.images);
+            page.evict();
+        }
+    }
+
+    /**
+     * Clear the views showing any of the given thumbnails, they are bound again on the next layout
+     *
+     * @param images the thumbnails
+     */
+    private void unbind(Bitmap[] images) {
+        List<Bitmap> released = Arrays.asList(images);
+        for (ImageView view : views) {
+            Drawable drawable = view.getDrawable();
+            if (drawable instanceof BitmapDrawable && released.contains(((BitmapDrawable) drawable).getBitmap())) {
+                view.setImageDrawable(null);
+            }
+        }
+    }
+
+    /**
+     * Listener asked to load a page of history in the background
+     */
+    public interface OnPageRequestListener {
+        /**
+         * Load the page and hand it back through {@link #onPageLoaded(int, List)}
+         *
+         * @param page the index of the page
+         * @param beforeId the page holds the images older than this id, null for the first page
+         */
+        void onPageRequested(int page, Long beforeId);
+    }
+
+    /**
+     * A page of history, the ids stay when the thumbnails are evicted
+     */
+    private static class Page {
+        private final Long beforeId;
+        private final long[] ids;
+        private final Bitmap[] images;
+        private boolean resident;
+        private boolean loading;
+
+        Page(Long beforeId, List<ImageEntity> entities) {
+            this.beforeId = beforeId;
+            this.ids = new long[entities.size()];
+            this.images = new Bitmap[entities.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = entities.get(i).getId();
+                images[i] = entities.get(i).getThumbnail();
+            }
+            BitmapPool.getInstance().acquire(Arrays.asList(images));
+            this.resident = true;
+        }
+
+        void restore(List<ImageEntity> entities) {
+            List<Bitmap> replaced = new ArrayList<>(Arrays.asList(images));
+            for (ImageEntity entity : entities) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] == entity.getId()) {
+                        images[i] = entity.getThumbnail();
+                    }
+                }
+            }
+            BitmapPool.getInstance().acquire(Arrays.asList(images));
+            BitmapPool.getInstance().release(replaced);
+            loading = false;
+            resident = true;
+        }
+
+        void evict() {
+            if (resident) {
+                BitmapPool.getInstance().release(Arrays.asList(images));
+                Arrays.fill(images, null);
+                resident = false;
+            }
+        }
+
+        long byteCount() {
+            long bytes = 0;
+            for (Bitmap image : images) {
+                if (image != null) {
+                    bytes += image.getAllocationByteCount();
+                }
+            }
+            return bytes;
+        }
+
+        long lastId() {
+            return ids[ids.length - 1];
+        }
+
+        int size() {
+            return ids.length;
+        }
+    }
 }
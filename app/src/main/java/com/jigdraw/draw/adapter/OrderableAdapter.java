@@ -16,10 +16,19 @@
 
 package com.jigdraw.draw.adapter;
 
+import com.jigdraw.draw.model.BoardModel;
+
 public interface OrderableAdapter {
     void reorderItems(int originalPosition, int newPosition);
 
     int getColumnCount();
 
     boolean canReorder(int position);
+
+    /**
+     * Get the arrangement of the items, an item's number in it is its stable id
+     *
+     * @return the board model
+     */
+    BoardModel getBoardModel();
 }
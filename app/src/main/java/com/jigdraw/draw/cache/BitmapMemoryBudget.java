@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.jigdraw.draw.model.enums.EvictionPriority;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Central account of the decoded bitmaps held by the app.  The holders of bitmaps, the caches, adapters and loaders,
+ * register as {@link Owner}s with an {@link EvictionPriority}, and the budget reports the bytes each of them holds.
+ * When the system asks the app to trim its memory the owners are asked to release their bitmaps in priority order,
+ * caches first, then the screens that can reload them, depending on the trim level, and the pool of recycled bitmaps
+ * they give back last.  Pinned owners are only accounted for.  Owners registered on behalf of a screen are dropped with
+ * {@link #unregisterAll(Object)} when it goes away, and are held weakly in case it doesn't, like the screens they are
+ * registered for, so that a missed unregister never keeps a screen alive.  Bitmaps shared between owners are counted
+ * by each of them.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class BitmapMemoryBudget
+        implements ComponentCallbacks2 {
+
+    /** Class name for logging */
+    private static final String TAG = "BitmapMemoryBudget";
+
+    /** Registered owners, held weakly */
+    private final Map<Owner, Registration> owners = new WeakHashMap<>();
+
+    /** Whether the budget listens to the application's trim callbacks yet */
+    private boolean installed;
+
+    private BitmapMemoryBudget() {}
+
+    /**
+     * Get the process wide budget
+     *
+     * @return the budget
+     */
+    public static BitmapMemoryBudget getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Listen to the trim callbacks of the application, only the first call registers
+     *
+     * @param context any context of the application
+     */
+    public synchronized void install(Context context) {
+        if (!installed) {
+            context.getApplicationContext().registerComponentCallbacks(this);
+            installed = true;
+        }
+    }
+
+    /**
+     * Register a process wide owner
+     *
+     * @param name the name the bytes are reported under
+     * @param owner the owner
+     * @param priority when the owner releases its bitmaps
+     */
+    public void register(String name, Owner owner, EvictionPriority priority) {
+        register(null, name, owner, priority);
+    }
+
+    /**
+     * Register an owner on behalf of a screen
+     *
+     * @param screen the screen unregistering the owner when it goes away
+     * @param name the name the bytes are reported under
+     * @param owner the owner
+     * @param priority when the owner releases its bitmaps
+     */
+    public void register(Object screen, String name, Owner owner, EvictionPriority priority) {
+        synchronized (owners) {
+            owners.put(owner, new Registration(screen, name, priority));
+        }
+    }
+
+    /**
+     * Unregister an owner
+     *
+     * @param owner the owner
+     */
+    public void unregister(Owner owner) {
+        synchronized (owners) {
+            owners.remove(owner);
+        }
+    }
+
+    /**
+     * Unregister all the owners of a screen
+     *
+     * @param screen the screen
+     */
+    public void unregisterAll(Object screen) {
+        if (screen == null) {
+            return;
+        }
+        synchronized (owners) {
+            owners.values().removeIf(registration -> registration.screen.get() == screen);
+        }
+    }
+
+    /**
+     * Get the bytes held by the registered owners, by name.  Owners registered under the same name are summed.
+     *
+     * @return the byte counts by name
+     */
+    public Map<String, Long> getByteCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Owner, Registration> entry : snapshot()) {
+            counts.merge(entry.getValue().name, entry.getKey().getByteCount(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Get the bytes held by all the registered owners
+     *
+     * @return the byte count
+     */
+    public long getTotalByteCount() {
+        long total = 0;
+        for (Map.Entry<Owner, Registration> entry : snapshot()) {
+            total += entry.getKey().getByteCount();
+        }
+        return total;
+    }
+
+    /**
+     * Ask the owners to release their bitmaps, in priority order up to the given priority, then empty the pools the
+     * released bitmaps went back to.  Pinned owners are never asked.
+     *
+     * @param upTo the last priority released before the pools
+     */
+    public void release(EvictionPriority upTo) {
+        List<Map.Entry<Owner, Registration>> entries = snapshot();
+        for (EvictionPriority priority : EvictionPriority.values()) {
+            if (priority.compareTo(EvictionPriority.POOL) >= 0 || priority.compareTo(upTo) > 0) {
+                break;
+            }
+            release(entries, priority);
+        }
+        release(entries, EvictionPriority.POOL);
+    }
+
+    private static void release(List<Map.Entry<Owner, Registration>> entries, EvictionPriority priority) {
+        for (Map.Entry<Owner, Registration> entry : entries) {
+            if (entry.getValue().priority == priority) {
+                entry.getKey().release();
+            }
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        EvictionPriority upTo = priorityForLevel(level);
+        Log.d(TAG, "trim level " + level + ", holding " + getByteCounts());
+        if (upTo != null) {
+            release(upTo);
+            Log.d(TAG, "released up to " + upTo + ", holding " + getTotalByteCount() + " bytes");
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Map a trim level to the last priority released before the pools: caches go as soon as memory runs low, screens
+     * reload their bitmaps once memory is critical or the app is hidden
+     *
+     * @param level the trim level
+     * @return the last priority released or null if nothing is released
+     */
+    static EvictionPriority priorityForLevel(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return EvictionPriority.RELOADABLE;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return EvictionPriority.CACHE;
+        }
+        return null;
+    }
+
+    /**
+     * Copy the registered owners, the copy holds them strongly while it is walked
+     */
+    private List<Map.Entry<Owner, Registration>> snapshot() {
+        synchronized (owners) {
+            return new ArrayList<>(new LinkedHashMap<>(owners).entrySet());
+        }
+    }
+
+    /**
+     * Holder of decoded bitmaps
+     */
+    public interface Owner {
+        /**
+         * Get the bytes of the bitmaps held
+         *
+         * @return the byte count
+         */
+        long getByteCount();
+
+        /**
+         * Drop the bitmaps that can be rebuilt, called on the main thread
+         */
+        void release();
+    }
+
+    /**
+     * How an owner is registered, the screen is held weakly too so that a registration never keeps its screen alive
+     */
+    private static final class Registration {
+        private final WeakReference<Object> screen;
+        private final String name;
+        private final EvictionPriority priority;
+
+        Registration(Object screen, String name, EvictionPriority priority) {
+            this.screen = new WeakReference<>(screen);
+            this.name = name;
+            this.priority = priority;
+        }
+    }
+
+    private static final class Holder {
+        private static final BitmapMemoryBudget INSTANCE = new BitmapMemoryBudget();
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.jigdraw.draw.model.enums.EvictionPriority;
+import com.jigdraw.draw.util.BitmapUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process wide pool of bitmaps no longer shown, bucketed by allocation size, that the tile and thumbnail decodes reuse
+ * through {@link BitmapFactory.Options#inBitmap} instead of allocating new bitmaps.  A bitmap decoded by the pool goes
+ * back to it once every holder that {@link #acquire(Collection) acquired} it has {@link #release(Collection) released}
+ * it, so a tile shared by the {@link TileCache} and a screen is only reused once both let go.  Bitmaps nobody acquired
+ * and immutable bitmaps are never pooled.  The pool is bounded by bytes and is emptied first under memory pressure.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class BitmapPool
+        implements BitmapMemoryBudget.Owner {
+
+    /** Class name for logging */
+    private static final String TAG = "BitmapPool";
+
+    /** Share of the heap the pooled bitmaps may take */
+    private static final int HEAP_FRACTION = 16;
+
+    /** A pooled bitmap is reused for a decode needing at least this fraction of its bytes */
+    private static final int MAX_WASTE = 2;
+
+    /** Bytes per pixel of the decoded tiles */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** Free bitmaps by allocation byte count */
+    private final TreeMap<Integer, Deque<Bitmap>> free = new TreeMap<>();
+
+    /** Holder counts of the bitmaps acquired, held weakly so a bitmap never released is simply collected */
+    private final Map<Bitmap, int[]> references = new WeakHashMap<>();
+
+    /** Bytes the free bitmaps may take */
+    private final long maxBytes;
+
+    /** Bytes taken by the free bitmaps */
+    private long bytes;
+
+    private int hitCount;
+    private int missCount;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the process wide pool
+     *
+     * @return the pool
+     */
+    public static BitmapPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Decode compressed bytes into a pooled bitmap if one fits
+     *
+     * @param data the compressed image
+     * @return the bitmap or null if it could not be decoded
+     */
+    public Bitmap decode(byte[] data) {
+        return decode(data, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decode compressed bytes into a pooled bitmap if one fits, scaled down to fit the given size
+     *
+     * @param data the compressed image
+     * @param maxWidth the largest width of the bitmap
+     * @param maxHeight the largest height of the bitmap
+     * @return the bitmap or null if it could not be decoded
+     */
+    public Bitmap decode(byte[] data, int maxWidth, int maxHeight) {
+        return decode(() -> new ByteArrayInputStream(data), maxWidth, maxHeight);
+    }
+
+    /**
+     * Decode a compressed image into a pooled bitmap if one fits, scaled down to fit the given size keeping its aspect
+     * ratio.  The image is subsampled while decoding then scaled to the exact size, so that a large image is never
+     * decoded whole.  The source is opened twice, once to read the size of the image and once to decode it, each
+     * stream is closed.
+     *
+     * @param source opens a stream over the compressed image
+     * @param maxWidth the largest width of the bitmap
+     * @param maxHeight the largest height of the bitmap
+     * @return the bitmap or null if it could not be decoded
+     */
+    public Bitmap decode(Supplier<InputStream> source, int maxWidth, int maxHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapUtil.streamToBitmap(source.get(), options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        float scale = Math.min(1f, Math.min((float) maxWidth / width, (float) maxHeight / height));
+        int targetWidth = Math.max(1, Math.round(width * scale));
+        int targetHeight = Math.max(1, Math.round(height * scale));
+        int sampleSize = BitmapUtil.calculateInSampleSize(width, height, targetWidth, targetHeight);
+        int sampledWidth = (width + sampleSize - 1) / sampleSize;
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inSampleSize = sampleSize;
+        if (sampledWidth > targetWidth) {
+            // scale the subsampled image the rest of the way, the result can be a pixel off either way
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = targetWidth;
+            options.inBitmap = get(targetWidth + 1, targetHeight + 1);
+        } else {
+            options.inScaled = false;
+            options.inBitmap = get(sampledWidth, (height + sampleSize - 1) / sampleSize);
+        }
+        try {
+            return BitmapUtil.streamToBitmap(source.get(), options);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "pooled bitmap could not be reused", e);
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapUtil.streamToBitmap(source.get(), options);
+        }
+    }
+
+    /**
+     * Decode a region of an image into a pooled bitmap if one fits, subsampled when the region is at least twice the
+     * given size
+     *
+     * @param decoder the decoder of the image
+     * @param rect the region
+     * @param maxWidth the largest width the region is shown at
+     * @param maxHeight the largest height the region is shown at
+     * @return the bitmap or null if it could not be decoded
+     */
+    public Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect rect, int maxWidth, int maxHeight) {
+        int sampleSize = BitmapUtil.calculateInSampleSize(rect.width(), rect.height(), maxWidth, maxHeight);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inSampleSize = sampleSize;
+        options.inBitmap = get((rect.width() + sampleSize - 1) / sampleSize,
+                (rect.height() + sampleSize - 1) / sampleSize);
+        try {
+            return decoder.decodeRegion(rect, options);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "pooled bitmap could not be reused", e);
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return decoder.decodeRegion(rect, options);
+        }
+    }
+
+    /**
+     * Take a free bitmap large enough for an image of the given size out of the pool
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the bitmap or null if none fits
+     */
+    synchronized Bitmap get(int width, int height) {
+        int needed = width * height * BYTES_PER_PIXEL;
+        Map.Entry<Integer, Deque<Bitmap>> bucket = free.ceilingEntry(needed);
+        if (bucket == null || bucket.getKey() > needed * MAX_WASTE) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return take(bucket.getKey(), bucket.getValue().poll());
+    }
+
+    /**
+     * Count a holder of each bitmap, a bitmap lying in the pool is taken back out of it
+     *
+     * @param bitmaps the bitmaps
+     */
+    public synchronized void acquire(Collection<Bitmap> bitmaps) {
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap == null) {
+                continue;
+            }
+            int[] count = references.get(bitmap);
+            if (count == null) {
+                references.put(bitmap, new int[]{1});
+                Deque<Bitmap> bucket = free.get(bitmap.getAllocationByteCount());
+                if (bucket != null && bucket.remove(bitmap)) {
+                    take(bitmap.getAllocationByteCount(), bitmap);
+                }
+            } else {
+                count[0]++;
+            }
+        }
+    }
+
+    /**
+     * Drop a holder of each bitmap, the bitmaps no one holds any more go into the pool
+     *
+     * @param bitmaps the bitmaps
+     */
+    public synchronized void release(Collection<Bitmap> bitmaps) {
+        for (Bitmap bitmap : bitmaps) {
+            int[] count = bitmap == null ? null : references.get(bitmap);
+            if (count != null && --count[0] == 0) {
+                references.remove(bitmap);
+                put(bitmap);
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getByteCount() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized void release() {
+        free.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Log the usage of the pool
+     */
+    public synchronized void logStats() {
+        Log.d(TAG, String.format("size=%d/%d bytes hits=%d misses=%d", bytes, maxBytes, hitCount, missCount));
+    }
+
+    private synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getAllocationByteCount() > maxBytes) {
+            return;
+        }
+        free.computeIfAbsent(bitmap.getAllocationByteCount(), size -> new ArrayDeque<>()).push(bitmap);
+        bytes += bitmap.getAllocationByteCount();
+        while (bytes > maxBytes) {
+            Map.Entry<Integer, Deque<Bitmap>> largest = free.lastEntry();
+            take(largest.getKey(), largest.getValue().pollLast());
+        }
+    }
+
+    /**
+     * Account for a bitmap leaving its bucket, dropping the bucket once empty
+     */
+    private Bitmap take(int size, Bitmap bitmap) {
+        Deque<Bitmap> bucket = free.get(size);
+        if (bucket != null && bucket.isEmpty()) {
+            free.remove(size);
+        }
+        if (bitmap != null) {
+            bytes -= size;
+        }
+        return bitmap;
+    }
+
+    private static final class Holder {
+        private static final BitmapPool INSTANCE = new BitmapPool(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+
+        static {
+            BitmapMemoryBudget.getInstance().register(TAG, INSTANCE, EvictionPriority.POOL);
+        }
+    }
+}
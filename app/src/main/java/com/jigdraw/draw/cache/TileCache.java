@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.cache;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.jigdraw.draw.model.enums.EvictionPriority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process wide cache of the decoded tiles of the puzzles by original id, so that reopening a puzzle or coming back to
+ * it after a rotation does not decode all the tiles again.  The tiles are kept with the cell width they were decoded to
+ * and are only handed out for that width, a board of another width decodes them again and replaces them.  The cache is
+ * bounded by the bytes of the tiles it holds and evicts the least recently used puzzles first.  Hits, misses and
+ * evictions are counted to size it from real usage.  The cache is the first to go when the {@link BitmapMemoryBudget}
+ * is asked to trim memory.  The cache holds its tiles in the {@link BitmapPool}, so an evicted tile is only reused once
+ * the screens showing it have released it too.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class TileCache
+        implements BitmapMemoryBudget.Owner {
+
+    /** Class name for logging */
+    private static final String TAG = "TileCache";
+
+    /** Share of the heap the cached tiles may take */
+    private static final int HEAP_FRACTION = 8;
+
+    /** Tiles in grid order by original id and cell width */
+    private final LruCache<Key, List<Bitmap>> tiles;
+
+    private TileCache(int maxBytes) {
+        tiles = new LruCache<Key, List<Bitmap>>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, List<Bitmap> value) {
+                return byteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, List<Bitmap> oldValue, List<Bitmap> newValue) {
+                BitmapPool.getInstance().release(oldValue);
+            }
+        };
+    }
+
+    /**
+     * Get the process wide cache
+     *
+     * @return the cache
+     */
+    public static TileCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Get the tiles of a puzzle, acquired in the {@link BitmapPool} on behalf of the caller which releases them when
+     * done
+     *
+     * @param id the original image id
+     * @param width the cell width the tiles are decoded to
+     * @return the tiles in grid order or null if they are not cached for that width
+     */
+    public synchronized List<Bitmap> acquire(Long id, int width) {
+        List<Bitmap> value = tiles.get(new Key(id, width));
+        if (value != null) {
+            BitmapPool.getInstance().acquire(value);
+        }
+        return value;
+    }
+
+    /**
+     * Cache the tiles of a puzzle in place of the tiles decoded to another width, tiles larger than the whole cache
+     * are not kept
+     *
+     * @param id the original image id
+     * @param width the cell width the tiles are decoded to
+     * @param value the tiles in grid order, the list is copied
+     */
+    public synchronized void put(Long id, int width, List<Bitmap> value) {
+        if (value.isEmpty()) {
+            return;
+        }
+        List<Bitmap> copy = Collections.unmodifiableList(new ArrayList<>(value));
+        BitmapPool.getInstance().acquire(copy);
+        remove(id);
+        tiles.put(new Key(id, width), copy);
+    }
+
+    /**
+     * Drop the tiles of a puzzle, when it is deleted
+     *
+     * @param id the original image id
+     */
+    public synchronized void remove(Long id) {
+        for (Key key : tiles.snapshot().keySet()) {
+            if (key.id.equals(id)) {
+                tiles.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drop all the tiles
+     */
+    public synchronized void clear() {
+        tiles.evictAll();
+    }
+
+    public int hitCount() {
+        return tiles.hitCount();
+    }
+
+    public int missCount() {
+        return tiles.missCount();
+    }
+
+    public int evictionCount() {
+        return tiles.evictionCount();
+    }
+
+    /**
+     * Bytes taken by the cached tiles
+     *
+     * @return the byte count
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    @Override
+    public long getByteCount() {
+        return size();
+    }
+
+    @Override
+    public void release() {
+        clear();
+    }
+
+    /**
+     * Bytes the cached tiles may take
+     *
+     * @return the byte count
+     */
+    public int maxSize() {
+        return tiles.maxSize();
+    }
+
+    /**
+     * Log the usage of the cache
+     */
+    public void logStats() {
+        Log.d(TAG, String.format("size=%d/%d bytes hits=%d misses=%d evictions=%d", size(), maxSize(), hitCount(),
+                missCount(), evictionCount()));
+    }
+
+    private static int byteCount(List<Bitmap> value) {
+        long bytes = 0;
+        for (Bitmap bitmap : value) {
+            if (bitmap != null) {
+                bytes += bitmap.getAllocationByteCount();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A puzzle and the cell width its tiles were decoded to, a lookup at another width is a miss
+     */
+    private static final class Key {
+        private final Long id;
+        private final int width;
+
+        Key(Long id, int width) {
+            this.id = id;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return id.equals(other.id) && width == other.width;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + width;
+        }
+    }
+
+    private static final class Holder {
+        private static final TileCache INSTANCE = new TileCache(
+                (int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION, Integer.MAX_VALUE));
+
+        static {
+            BitmapMemoryBudget.getInstance().register(TAG, INSTANCE, EvictionPriority.CACHE);
+        }
+    }
+}
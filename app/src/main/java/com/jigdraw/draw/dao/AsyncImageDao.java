@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.dao;
+
+import com.jigdraw.draw.model.ImageEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous variant of {@link ImageDao}.  Every call runs on the io executor and returns at once with a future of
+ * the result.  Cancelling a future interrupts the call if it is already running, a {@link #findTiles(Long)} then
+ * stops decoding the tiles that are left.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public interface AsyncImageDao {
+    /**
+     * Save image entity
+     *
+     * @param entity the entity to create
+     * @return the future generated id
+     */
+    CompletableFuture<Long> create(ImageEntity entity);
+
+    /**
+     * Save an original image and its tiles in a single transaction
+     *
+     * @param original the original image
+     * @param tiles the tiles cut from the original
+     * @return the future generated id of the original
+     */
+    CompletableFuture<Long> createWithTiles(ImageEntity original, List<ImageEntity> tiles);
+
+    /**
+     * Save an original image with the size of its grid and no tiles
+     *
+     * @param original the original image
+     * @param grid the number of tiles per row and per column
+     * @return the future generated id of the original
+     */
+    CompletableFuture<Long> createWithGrid(ImageEntity original, int grid);
+
+    /**
+     * Find entity by id
+     *
+     * @param id the id to look up
+     * @return the future entity
+     */
+    CompletableFuture<ImageEntity> find(Long id);
+
+    /**
+     * Find the jigsaw tiles for the original id in grid order
+     *
+     * @param id the original image id
+     * @return the future jigsaw entities
+     */
+    CompletableFuture<List<ImageEntity>> findTiles(Long id);
+
+    /**
+     * Hand the jigsaw tiles for the original id to the consumer in grid order as they are decoded, on the io thread
+     *
+     * @param id the original image id
+     * @param maxWidth the width the tiles are decoded down to
+     * @param maxHeight the height the tiles are decoded down to
+     * @param consumer the consumer of the tiles
+     * @return the future number of tiles
+     */
+    CompletableFuture<Integer> streamTiles(Long id, int maxWidth, int maxHeight, Consumer<ImageEntity> consumer);
+
+    /**
+     * Find the number of tiles per row and per column of a puzzle
+     *
+     * @param id the original image id
+     * @return the future grid size, 0 if the puzzle has no tiles
+     */
+    CompletableFuture<Integer> findGridSize(Long id);
+
+    /**
+     * Update the given entity
+     *
+     * @param entity the entity to update
+     * @return the future number of rows affected
+     */
+    CompletableFuture<Integer> update(ImageEntity entity);
+
+    /**
+     * Delete an original image and its tiles
+     *
+     * @param id the original image id
+     * @return the future number of rows affected
+     */
+    CompletableFuture<Integer> delete(Long id);
+
+    /**
+     * Find a page of the original images for history, newest first
+     *
+     * @param beforeId only images with a smaller id, null for the first page
+     * @param limit the maximum number of images in the page
+     * @return the future page of images, only the thumbnails are loaded
+     */
+    CompletableFuture<List<ImageEntity>> getHistoryPage(Long beforeId, int limit);
+}
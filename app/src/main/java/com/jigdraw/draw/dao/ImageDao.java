@@ -19,6 +19,7 @@ package com.jigdraw.draw.dao;
 import com.jigdraw.draw.model.ImageEntity;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Simple interface for {@link ImageEntity} CRUD operations
@@ -34,6 +35,33 @@ public interface ImageDao {
      */
     Long create(ImageEntity entity);
 
+    /**
+     * Save all the image entities in a single transaction
+     *
+     * @param entities the entities to create
+     * @return the generated ids in the same order as the entities
+     */
+    List<Long> createAll(List<ImageEntity> entities);
+
+    /**
+     * Save an original image and its tiles in a single transaction.  The tiles are linked to the generated id of the
+     * original and nothing is saved if any of the inserts fails.
+     *
+     * @param original the original image
+     * @param tiles the tiles cut from the original
+     * @return the generated id of the original
+     */
+    Long createWithTiles(ImageEntity original, List<ImageEntity> tiles);
+
+    /**
+     * Save an original image with the size of its grid and no tiles.  The tiles are cut from the original when found.
+     *
+     * @param original the original image
+     * @param grid the number of tiles per row and per column
+     * @return the generated id of the original
+     */
+    Long createWithGrid(ImageEntity original, int grid);
+
     /**
      * Find entity by id
      *
@@ -43,13 +71,43 @@ public interface ImageDao {
     ImageEntity find(Long id);
 
     /**
-     * Find the jigsaw tiles for the original id
+     * Find the jigsaw tiles for the original id in grid order, cut from the original if it was saved with a grid size
      *
      * @param id the original image id
      * @return the jigsaw entities
      */
     List<ImageEntity> findTiles(Long id);
 
+    /**
+     * Hand out the jigsaw tiles for the original id one at a time in grid order, without building the whole list.  The
+     * consumer is called on the calling thread and the dao keeps no reference to the tiles it handed out.
+     *
+     * @param id the original image id
+     * @param consumer takes the tiles
+     * @return the number of tiles
+     */
+    int streamTiles(Long id, Consumer<ImageEntity> consumer);
+
+    /**
+     * Hand out the jigsaw tiles for the original id one at a time in grid order like {@link #streamTiles(Long,
+     * Consumer)}, decoded down to fit the given size.  Tiles already smaller are decoded as they are.
+     *
+     * @param id the original image id
+     * @param maxWidth the largest width of a decoded tile in pixels
+     * @param maxHeight the largest height of a decoded tile in pixels
+     * @param consumer takes the tiles
+     * @return the number of tiles
+     */
+    int streamTiles(Long id, int maxWidth, int maxHeight, Consumer<ImageEntity> consumer);
+
+    /**
+     * Find the number of tiles in a row and in a column of the jigsaw for the original id, without decoding any
+     *
+     * @param id the original image id
+     * @return the grid size or 0 if the jigsaw has no tiles
+     */
+    int findGridSize(Long id);
+
     /**
      * Update the given image entity
      *
@@ -59,17 +117,27 @@ public interface ImageDao {
     int update(ImageEntity entity);
 
     /**
-     * Delete the entity by id
+     * Delete the original image by id, its tiles are deleted with it
      *
-     * @param id the id of the entity
+     * @param id the id of the original image
      * @return number of rows deleted
      */
     int delete(Long id);
 
     /**
-     * Find all the original images for history
+     * Find all the original images for history.  Only the thumbnails are loaded, the full size images are left null.
      *
      * @return list of images user created
      */
     List<ImageEntity> getHistory();
+
+    /**
+     * Find a page of the original images for history, newest first.  Pages are chained by id instead of an offset so
+     * each page is a short index range no matter how deep into the history it is.
+     *
+     * @param beforeId only images with a smaller id, null for the first page
+     * @param limit the maximum number of images in the page
+     * @return the page of images, only the thumbnails are loaded
+     */
+    List<ImageEntity> getHistoryPage(Long beforeId, int limit);
 }
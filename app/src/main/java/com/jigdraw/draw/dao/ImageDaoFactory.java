@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.dao;
+
+import static com.jigdraw.draw.util.Constants.PREFERENCES_NAME;
+import static com.jigdraw.draw.util.Constants.STORAGE_BACKEND_KEY;
+
+import android.content.Context;
+
+import com.jigdraw.draw.dao.impl.AsyncImageDaoImpl;
+import com.jigdraw.draw.dao.impl.ImageDaoImpl;
+import com.jigdraw.draw.dao.impl.PackImageDao;
+import com.jigdraw.draw.model.enums.StorageBackend;
+import com.jigdraw.draw.util.ThreadPools;
+
+/**
+ * Creates the {@link ImageDao} for the storage backend selected in the app preferences, so that the backends can be
+ * switched and compared on the same puzzles.  Every backend reads the puzzles saved by the others.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class ImageDaoFactory {
+
+    private ImageDaoFactory() {}
+
+    /**
+     * Create the dao for the selected storage backend
+     *
+     * @param context the application context
+     * @return the image dao
+     */
+    public static ImageDao create(Context context) {
+        return create(context, getBackend(context));
+    }
+
+    /**
+     * Create the dao for the given storage backend
+     *
+     * @param context the application context
+     * @param backend the storage backend
+     * @return the image dao
+     */
+    public static ImageDao create(Context context, StorageBackend backend) {
+        switch (backend) {
+            case PACK:
+                return new PackImageDao(context);
+            case LAZY:
+            case SQLITE:
+            default:
+                return new ImageDaoImpl(context);
+        }
+    }
+
+    /**
+     * Create the async dao for the selected storage backend, running on the io pool
+     *
+     * @param context the application context
+     * @return the async image dao
+     */
+    public static AsyncImageDao createAsync(Context context) {
+        return new AsyncImageDaoImpl(create(context), ThreadPools.io());
+    }
+
+    /**
+     * Get the selected storage backend, sqlite unless set otherwise
+     *
+     * @param context the application context
+     * @return the storage backend
+     */
+    public static StorageBackend getBackend(Context context) {
+        String name = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getString(STORAGE_BACKEND_KEY, StorageBackend.SQLITE.name());
+        return StorageBackend.fromName(name);
+    }
+}
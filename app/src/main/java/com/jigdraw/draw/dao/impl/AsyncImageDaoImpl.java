@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.dao.impl;
+
+import com.jigdraw.draw.dao.AsyncImageDao;
+import com.jigdraw.draw.dao.ImageDao;
+import com.jigdraw.draw.model.ImageEntity;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Default implementation for {@link com.jigdraw.draw.dao.AsyncImageDao}, runs the calls of a blocking {@link ImageDao}
+ * on an executor.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class AsyncImageDaoImpl
+        implements AsyncImageDao {
+
+    /** The blocking dao */
+    private ImageDao dao;
+
+    /** Executor running the calls */
+    private ExecutorService executor;
+
+    /**
+     * Create new async dao running the given dao on the given executor
+     *
+     * @param dao the blocking dao
+     * @param executor the executor, should be bounded
+     */
+    public AsyncImageDaoImpl(ImageDao dao, ExecutorService executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Long> create(ImageEntity entity) {
+        return submit(() -> dao.create(entity));
+    }
+
+    @Override
+    public CompletableFuture<Long> createWithTiles(ImageEntity original, List<ImageEntity> tiles) {
+        return submit(() -> dao.createWithTiles(original, tiles));
+    }
+
+    @Override
+    public CompletableFuture<Long> createWithGrid(ImageEntity original, int grid) {
+        return submit(() -> dao.createWithGrid(original, grid));
+    }
+
+    @Override
+    public CompletableFuture<ImageEntity> find(Long id) {
+        return submit(() -> dao.find(id));
+    }
+
+    @Override
+    public CompletableFuture<List<ImageEntity>> findTiles(Long id) {
+        return submit(() -> dao.findTiles(id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> streamTiles(Long id, int maxWidth, int maxHeight,
+                                                  Consumer<ImageEntity> consumer) {
+        return submit(() -> dao.streamTiles(id, maxWidth, maxHeight, consumer));
+    }
+
+    @Override
+    public CompletableFuture<Integer> findGridSize(Long id) {
+        return submit(() -> dao.findGridSize(id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> update(ImageEntity entity) {
+        return submit(() -> dao.update(entity));
+    }
+
+    @Override
+    public CompletableFuture<Integer> delete(Long id) {
+        return submit(() -> dao.delete(id));
+    }
+
+    @Override
+    public CompletableFuture<List<ImageEntity>> getHistoryPage(Long beforeId, int limit) {
+        return submit(() -> dao.getHistoryPage(beforeId, limit));
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        TaskFuture<T> future = new TaskFuture<>();
+        future.setTask(executor.submit(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Future that also cancels the task computing it, interrupting it if it is running
+     */
+    private static final class TaskFuture<T>
+            extends CompletableFuture<T> {
+        private volatile Future<?> task;
+
+        void setTask(Future<?> task) {
+            this.task = task;
+            if (isCancelled()) {
+                task.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> t = task;
+            if (cancelled && t != null) {
+                t.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+}
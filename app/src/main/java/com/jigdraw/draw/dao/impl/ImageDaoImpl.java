@@ -16,36 +16,85 @@
 
 package com.jigdraw.draw.dao.impl;
 
-import static com.jigdraw.draw.util.Base64Util.base64ToBitmap;
-import static com.jigdraw.draw.util.DBUtil.ALL_COLUMNS;
+import static com.jigdraw.draw.db.BlobChunks.chunkCount;
+import static com.jigdraw.draw.db.BlobChunks.isOversized;
+import static com.jigdraw.draw.util.BitmapUtil.streamToBitmap;
+import static com.jigdraw.draw.util.Constants.THUMBNAIL_SIZE;
+import static com.jigdraw.draw.util.DBUtil.CHUNKS_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.COL_COLUMN;
 import static com.jigdraw.draw.util.DBUtil.DESC_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.GRID_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.GRID_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.GRID_SIZE_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.HISTORY_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.ID_BEFORE_SELECTION;
 import static com.jigdraw.draw.util.DBUtil.ID_COLUMN;
 import static com.jigdraw.draw.util.DBUtil.ID_SELECTION;
 import static com.jigdraw.draw.util.DBUtil.IMAGE_COLUMN;
-import static com.jigdraw.draw.util.DBUtil.JIGSAW_TABLE;
+import static com.jigdraw.draw.util.DBUtil.INSERT_PUZZLE_ROW;
+import static com.jigdraw.draw.util.DBUtil.INSERT_TILE_ROW;
 import static com.jigdraw.draw.util.DBUtil.NAME_COLUMN;
-import static com.jigdraw.draw.util.DBUtil.ORIGINAL_COLUMN;
-import static com.jigdraw.draw.util.DBUtil.ORIGINAL_SELECTION;
-import static com.jigdraw.draw.util.DBUtil.ORIGINAL_SELECTION_NULL;
+import static com.jigdraw.draw.util.DBUtil.NEWEST_FIRST;
+import static com.jigdraw.draw.util.DBUtil.PACK_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.PUZZLES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_CHUNKS_TABLE;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.ROW_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.THUMBNAIL_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.TILES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.TILE_CHUNKS_TABLE;
+import static com.jigdraw.draw.util.DBUtil.TILE_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.TILE_ORDER;
 import static com.jigdraw.draw.util.DBUtil.getIdArguments;
-import static com.jigdraw.draw.util.EntityUtil.entityToContentValues;
+import static com.jigdraw.draw.util.EntityUtil.bindPuzzle;
+import static com.jigdraw.draw.util.EntityUtil.bindTile;
+import static com.jigdraw.draw.util.EntityUtil.encodeImage;
+import static com.jigdraw.draw.util.EntityUtil.puzzleToContentValues;
+import static com.jigdraw.draw.util.EntityUtil.tileToContentValues;
+import static com.jigdraw.draw.util.GridUtil.tileRect;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.jigdraw.draw.cache.BitmapPool;
+import com.jigdraw.draw.cache.TileCache;
 import com.jigdraw.draw.dao.ImageDao;
+import com.jigdraw.draw.db.BlobChunks;
 import com.jigdraw.draw.db.JigsawDB;
 import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.model.LazyImage;
+import com.jigdraw.draw.util.ThreadPools;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 /**
  * Default implementation for {@link com.jigdraw.draw.dao.ImageDao}. Provides CRUD database operations for {@link
- * com.jigdraw.draw.model.ImageEntity}
+ * com.jigdraw.draw.model.ImageEntity}.  Original images are stored in the puzzles table and tiles in the tiles table,
+ * an entity with an original id is a tile.  Images too large for one row are stored as {@link BlobChunks} and decoded
+ * from a stream over the chunks.  Tiles are streamed: rows are read off the cursor a few ahead of the tile handed out
+ * and decoded in parallel on the compute pool meanwhile, into bitmaps reused from the {@link BitmapPool}.  Reads go
+ * through {@link #reader()} and are not blocked by a save in progress.  A puzzle saved with a grid size has no tile
+ * rows, its tiles are decoded from regions of the original when found.  A puzzle saved by the {@link PackImageDao} has
+ * its tiles in a {@link TilePack} file instead, read and deleted here so that every backend handles it.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
@@ -55,8 +104,17 @@ public class ImageDaoImpl
     /** Class name for logging */
     private static final String TAG = "ImageDaoImpl";
 
-    /** SQLite database */
-    private SQLiteDatabase db;
+    /** Process wide database helper */
+    private JigsawDB helper;
+
+    /** Tiles being decoded ahead of the one handed out, bounds the compressed and decoded tiles held at once */
+    protected static final int DECODE_WINDOW = 2 * ThreadPools.CORES;
+
+    /** Executor decoding the tiles */
+    protected ExecutorService decoder = ThreadPools.compute();
+
+    /** Directory the tile pack paths are relative to */
+    protected File filesDir;
 
     /**
      * Create new dao object with given context
@@ -64,21 +122,93 @@ public class ImageDaoImpl
      * @param context the application context
      */
     public ImageDaoImpl(Context context) {
-        JigsawDB mdb = new JigsawDB(context);
-        db = mdb.getWritableDatabase();
+        helper = JigsawDB.getInstance(context);
+        filesDir = context.getFilesDir();
     }
 
     @Override
     public Long create(ImageEntity entity) {
-        Long id = db.insert(JIGSAW_TABLE, null, entityToContentValues(entity));
+        Long id = createAll(Collections.singletonList(entity)).get(0);
         Log.d(TAG, "successfully saved image...id: " + id);
 
         return id;
     }
 
+    @Override
+    public List<Long> createAll(List<ImageEntity> entities) {
+        List<Long> ids = new ArrayList<>(entities.size());
+        SQLiteDatabase db = writer();
+        db.beginTransactionNonExclusive();
+        SQLiteStatement insertPuzzle = db.compileStatement(INSERT_PUZZLE_ROW);
+        SQLiteStatement insertTile = db.compileStatement(INSERT_TILE_ROW);
+        try {
+            for (ImageEntity entity : entities) {
+                ids.add(isTile(entity) ? insertTile(insertTile, entity, entity.getOriginalId())
+                        : insertPuzzle(insertPuzzle, entity));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insertPuzzle.close();
+            insertTile.close();
+            db.endTransaction();
+        }
+        Log.d(TAG, "successfully saved " + ids.size() + " images");
+
+        return ids;
+    }
+
+    @Override
+    public Long createWithTiles(ImageEntity original, List<ImageEntity> tiles) {
+        Long originalId;
+        SQLiteDatabase db = writer();
+        db.beginTransactionNonExclusive();
+        SQLiteStatement insertPuzzle = db.compileStatement(INSERT_PUZZLE_ROW);
+        SQLiteStatement insertTile = db.compileStatement(INSERT_TILE_ROW);
+        try {
+            originalId = insertPuzzle(insertPuzzle, original);
+            for (ImageEntity tile : tiles) {
+                insertTile(insertTile, tile, originalId);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insertPuzzle.close();
+            insertTile.close();
+            db.endTransaction();
+        }
+        // only point the tiles at the puzzle once it is committed, a rolled back save leaves them untouched
+        for (ImageEntity tile : tiles) {
+            tile.setOriginalId(originalId);
+        }
+        Log.d(TAG, "successfully saved original image...id: " + originalId + " with " + tiles.size() + " tiles");
+
+        return originalId;
+    }
+
+    @Override
+    public Long createWithGrid(ImageEntity original, int grid) {
+        Long originalId;
+        SQLiteDatabase db = writer();
+        db.beginTransactionNonExclusive();
+        SQLiteStatement insertPuzzle = db.compileStatement(INSERT_PUZZLE_ROW);
+        try {
+            originalId = insertPuzzle(insertPuzzle, original);
+            ContentValues cv = new ContentValues();
+            cv.put(GRID_COLUMN, grid);
+            db.update(PUZZLES_TABLE, cv, ID_SELECTION, getIdArguments(originalId));
+            db.setTransactionSuccessful();
+        } finally {
+            insertPuzzle.close();
+            db.endTransaction();
+        }
+        Log.d(TAG, "successfully saved original image...id: " + originalId + " with a " + grid + "x" + grid + " grid");
+
+        return originalId;
+    }
+
     @Override
     public ImageEntity find(Long id) {
-        Cursor cursor = db.query(JIGSAW_TABLE, ALL_COLUMNS, ID_SELECTION, getIdArguments(id), null, null, null);
+        Cursor cursor = reader().query(PUZZLES_TABLE, PUZZLE_COLUMNS, ID_SELECTION, getIdArguments(id), null, null,
+                null);
         ImageEntity entity = getEntityFromCursor(cursor);
         cleanUp(cursor);
 
@@ -87,47 +217,168 @@ public class ImageDaoImpl
 
     @Override
     public List<ImageEntity> findTiles(Long id) {
-        List<ImageEntity> entities = new ArrayList<>();
-        Cursor cursor = db.query(JIGSAW_TABLE, ALL_COLUMNS, ORIGINAL_SELECTION, getIdArguments(id), null, null, null);
-        entities.addAll(getAllFromCursor(cursor));
-        cleanUp(cursor);
+        List<ImageEntity> tiles = new ArrayList<>();
+        streamTiles(id, tiles::add);
 
-        Log.d(TAG, "Found " + entities.size() + " tiles for the original id "
-                + id);
-        return entities;
+        return tiles;
+    }
+
+    @Override
+    public int streamTiles(Long id, Consumer<ImageEntity> consumer) {
+        return streamTiles(id, Integer.MAX_VALUE, Integer.MAX_VALUE, consumer);
+    }
+
+    @Override
+    public int streamTiles(Long id, int maxWidth, int maxHeight, Consumer<ImageEntity> consumer) {
+        String path = getPackPath(id);
+        if (path != null) {
+            return readPack(id, path, maxWidth, maxHeight, consumer);
+        }
+        long start = SystemClock.elapsedRealtime();
+        int count;
+        Cursor cursor = reader().query(TILES_TABLE, TILE_COLUMNS, PUZZLE_SELECTION, getIdArguments(id), null, null,
+                TILE_ORDER);
+        try {
+            TileColumns columns = new TileColumns(cursor);
+            count = ThreadPools.runOrdered(decoder,
+                    () -> cursor.moveToNext() ? readTile(cursor, columns, maxWidth, maxHeight) : null, DECODE_WINDOW,
+                    consumer);
+        } finally {
+            cleanUp(cursor);
+        }
+        if (count == 0) {
+            List<ImageEntity> tiles = cutTiles(id, maxWidth, maxHeight);
+            tiles.forEach(consumer);
+            count = tiles.size();
+        }
+
+        Log.d(TAG, "Found " + count + " tiles for the original id " + id + " in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return count;
+    }
+
+    @Override
+    public int findGridSize(Long id) {
+        String path = getPackPath(id);
+        if (path != null) {
+            try {
+                return (int) Math.round(Math.sqrt(TilePack.count(new File(filesDir, path))));
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read tile pack " + path, e);
+            }
+        }
+        String[] args = getIdArguments(id);
+        Cursor cursor = reader().query(PUZZLES_TABLE, GRID_SIZE_COLUMNS, ID_SELECTION, args, null, null, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getInt(0);
+            }
+        } finally {
+            cleanUp(cursor);
+        }
+        long tiles = DatabaseUtils.queryNumEntries(reader(), TILES_TABLE, PUZZLE_SELECTION, args);
+
+        return (int) Math.round(Math.sqrt(tiles));
     }
 
     @Override
     public int update(ImageEntity entity) {
         Log.d(TAG, "Updating entity with id: " + entity.getId());
-        ContentValues cv = entityToContentValues(entity);
+        byte[] image = encodeImage(entity);
+        boolean chunked = isOversized(image);
+        byte[] inline = chunked ? null : image;
+        int chunks = chunked ? chunkCount(image.length) : 0;
+        String table = isTile(entity) ? TILES_TABLE : PUZZLES_TABLE;
+        String chunksTable = isTile(entity) ? TILE_CHUNKS_TABLE : PUZZLE_CHUNKS_TABLE;
+        ContentValues cv = isTile(entity) ? tileToContentValues(entity, inline, chunks)
+                : puzzleToContentValues(entity, inline, chunks);
 
-        return db.update(JIGSAW_TABLE, cv, ID_SELECTION, getIdArguments(entity.getId()));
+        int rows;
+        SQLiteDatabase db = writer();
+        db.beginTransactionNonExclusive();
+        try {
+            rows = db.update(table, cv, ID_SELECTION, getIdArguments(entity.getId()));
+            BlobChunks.delete(db, chunksTable, entity.getId());
+            if (chunked && rows > 0) {
+                BlobChunks.write(db, chunksTable, entity.getId(), image);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return rows;
     }
 
     @Override
     public int delete(Long id) {
         Log.d(TAG, "Deleting entity with id: " + id);
-        return db.delete(JIGSAW_TABLE, ID_SELECTION, getIdArguments(id));
+        TileCache.getInstance().remove(id);
+        String path = getPackPath(id);
+        int count = writer().delete(PUZZLES_TABLE, ID_SELECTION, getIdArguments(id));
+        if (path != null && !new File(filesDir, path).delete()) {
+            Log.w(TAG, "failed to delete pack " + path);
+        }
+        return count;
     }
 
     @Override
     public List<ImageEntity> getHistory() {
-        Cursor cursor = db.query(JIGSAW_TABLE, ALL_COLUMNS, ORIGINAL_SELECTION_NULL, null, null, null, null);
+        Cursor cursor = reader().query(PUZZLES_TABLE, HISTORY_COLUMNS, null, null, null, null, null);
 
-        List<ImageEntity> entities = getAllFromCursor(cursor);
+        List<ImageEntity> entities = getHistoryFromCursor(cursor);
         cleanUp(cursor);
 
         Log.d(TAG, "Found " + entities.size() + " images from history");
         return entities;
     }
 
-    private List<ImageEntity> getAllFromCursor(Cursor cursor) {
+    @Override
+    public List<ImageEntity> getHistoryPage(Long beforeId, int limit) {
+        String selection = beforeId == null ? null : ID_BEFORE_SELECTION;
+        String[] args = beforeId == null ? null : getIdArguments(beforeId);
+        Cursor cursor = reader().query(PUZZLES_TABLE, HISTORY_COLUMNS, selection, args, null, null, NEWEST_FIRST,
+                String.valueOf(limit));
+
+        List<ImageEntity> entities = getHistoryFromCursor(cursor);
+        cleanUp(cursor);
+
+        Log.d(TAG, "Found " + entities.size() + " images from history before id " + beforeId);
+        return entities;
+    }
+
+    /**
+     * Get the path of the tile pack of a puzzle, relative to the app files directory
+     *
+     * @param id the original image id
+     * @return the path or null if the tiles are not in a pack
+     */
+    protected String getPackPath(Long id) {
+        Cursor cursor = reader().query(PUZZLES_TABLE, PACK_COLUMNS, ID_SELECTION, getIdArguments(id), null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int readPack(Long id, String path, int maxWidth, int maxHeight, Consumer<ImageEntity> consumer) {
+        try {
+            int count = TilePack.read(new File(filesDir, path), id, maxWidth, maxHeight, decoder, DECODE_WINDOW,
+                    consumer);
+            Log.d(TAG, "Found " + count + " tiles in pack " + path);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read tile pack " + path, e);
+        }
+    }
+
+    private List<ImageEntity> getHistoryFromCursor(Cursor cursor) {
         List<ImageEntity> entities = new ArrayList<>();
         if (cursor != null) {
+            HistoryColumns columns = new HistoryColumns(cursor);
             while (cursor.moveToNext()) {
-                ImageEntity entity = getEntity(cursor);
-                entities.add(entity);
+                entities.add(getHistoryEntry(cursor, columns));
             }
         }
         return entities;
@@ -136,7 +387,7 @@ public class ImageDaoImpl
     private ImageEntity getEntityFromCursor(Cursor cursor) {
         ImageEntity entity = null;
         if (cursor != null && cursor.moveToFirst()) {
-            entity = getEntity(cursor);
+            entity = getPuzzle(cursor);
         }
         return entity;
     }
@@ -147,22 +398,215 @@ public class ImageDaoImpl
         }
     }
 
-    private ImageEntity getEntity(Cursor cursor) {
+    private ImageEntity getPuzzle(Cursor cursor) {
         String name = cursor.getString(getIndex(cursor, NAME_COLUMN));
-        String base64String = cursor.getString(getIndex(cursor, IMAGE_COLUMN));
         String desc = cursor.getString(getIndex(cursor, DESC_COLUMN));
-
-        Long originalId = cursor.getLong(getIndex(cursor, ORIGINAL_COLUMN));
         Long id = cursor.getLong(getIndex(cursor, ID_COLUMN));
-
         Log.d(TAG, "image entity found with name: " + name);
-        ImageEntity entity = new ImageEntity(base64ToBitmap(base64String), name, desc, originalId);
+        ImageEntity entity = new ImageEntity(null, name, desc, null);
+        entity.setImageSource(getImage(cursor, PUZZLE_CHUNKS_TABLE, id));
         entity.setId(id);
 
         return entity;
     }
 
+    private ImageEntity getHistoryEntry(Cursor cursor, HistoryColumns columns) {
+        String name = cursor.getString(columns.name);
+        byte[] bytes = cursor.getBlob(columns.thumbnail);
+        String desc = cursor.getString(columns.desc);
+        Long id = cursor.getLong(columns.id);
+
+        ImageEntity entity = new ImageEntity(null, name, desc, null);
+        if (bytes != null) {
+            entity.setThumbnailSource(LazyImage.ofLoader(
+                    () -> BitmapPool.getInstance().decode(bytes, THUMBNAIL_SIZE, THUMBNAIL_SIZE)));
+        }
+        entity.setId(id);
+
+        return entity;
+    }
+
+    /**
+     * Read a tile row without decoding it, the returned task decodes the tile so that the decodes can run in parallel
+     * once the cursor is closed.  The chunks of an oversized tile are read here too, the decoder threads never query.
+     */
+    private Callable<ImageEntity> readTile(Cursor cursor, TileColumns columns, final int maxWidth,
+                                           final int maxHeight) {
+        final Long originalId = cursor.getLong(columns.puzzle);
+        final int row = cursor.getInt(columns.row);
+        final int col = cursor.getInt(columns.col);
+        final Long id = cursor.getLong(columns.id);
+        final int chunks = cursor.getInt(columns.chunks);
+        final byte[] bytes;
+        try {
+            bytes = chunks > 0 ? BlobChunks.read(reader(), TILE_CHUNKS_TABLE, id, chunks)
+                    : cursor.getBlob(columns.image);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read tile " + id, e);
+        }
+
+        return () -> {
+            Bitmap image = bytes == null ? null : BitmapPool.getInstance().decode(bytes, maxWidth, maxHeight);
+            ImageEntity entity = new ImageEntity(image, originalId, row, col);
+            entity.setId(id);
+
+            return entity;
+        };
+    }
+
+    /**
+     * Get a lazy handle on the image of the current row, holding its bytes or streaming it from its chunks on first
+     * access if it is not stored in the row
+     */
+    private LazyImage getImage(Cursor cursor, String chunksTable, long id) {
+        final int chunks = cursor.getInt(getIndex(cursor, CHUNKS_COLUMN));
+        if (chunks > 0) {
+            return LazyImage.ofLoader(() -> streamToBitmap(BlobChunks.open(reader(), chunksTable, id, chunks)));
+        }
+        return LazyImage.ofBytes(cursor.getBlob(getIndex(cursor, IMAGE_COLUMN)));
+    }
+
+    /**
+     * Cut the tiles of a puzzle saved with a grid size from regions of its original, the original is never decoded
+     * whole.  Regions larger than the given size are subsampled.  Nothing is cut if the puzzle has no grid size.
+     */
+    private List<ImageEntity> cutTiles(Long id, int maxWidth, int maxHeight) {
+        List<ImageEntity> tiles = new ArrayList<>();
+        BitmapRegionDecoder decoder = null;
+        int grid = 0;
+        Cursor cursor = reader().query(PUZZLES_TABLE, GRID_COLUMNS, ID_SELECTION, getIdArguments(id), null, null, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(getIndex(cursor, GRID_COLUMN))) {
+                grid = cursor.getInt(getIndex(cursor, GRID_COLUMN));
+                decoder = newRegionDecoder(cursor, id);
+            }
+        } finally {
+            cleanUp(cursor);
+        }
+        if (decoder == null) {
+            return tiles;
+        }
+
+        try {
+            int w = decoder.getWidth();
+            int h = decoder.getHeight();
+            for (int row = 0; row < grid; row++) {
+                for (int col = 0; col < grid; col++) {
+                    Bitmap tile = BitmapPool.getInstance().decodeRegion(decoder, tileRect(w, h, grid, row, col),
+                            maxWidth, maxHeight);
+                    tiles.add(new ImageEntity(tile, id, row, col));
+                }
+            }
+        } finally {
+            decoder.recycle();
+        }
+
+        return tiles;
+    }
+
+    private BitmapRegionDecoder newRegionDecoder(Cursor cursor, long id) {
+        int chunks = cursor.getInt(getIndex(cursor, CHUNKS_COLUMN));
+        try {
+            if (chunks > 0) {
+                InputStream in = BlobChunks.open(reader(), PUZZLE_CHUNKS_TABLE, id, chunks);
+                try {
+                    return BitmapRegionDecoder.newInstance(in, false);
+                } finally {
+                    in.close();
+                }
+            }
+            byte[] bytes = cursor.getBlob(getIndex(cursor, IMAGE_COLUMN));
+            return BitmapRegionDecoder.newInstance(bytes, 0, bytes.length, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open the original of puzzle " + id, e);
+        }
+    }
+
+    /**
+     * Get the shared database for writes, opened by the first call.  Write transactions are non exclusive so that
+     * readers carry on from the write ahead log meanwhile.
+     *
+     * @return the database
+     */
+    protected SQLiteDatabase writer() {
+        return helper.getWritableDatabase();
+    }
+
+    /**
+     * Get the shared database for reads.  Reads outside of a transaction run on one of the pooled read connections
+     * and see the last committed data, they never wait for a write transaction on another thread.
+     *
+     * @return the database
+     */
+    protected SQLiteDatabase reader() {
+        return helper.getReadableDatabase();
+    }
+
+    private boolean isTile(ImageEntity entity) {
+        return entity.getOriginalId() != null;
+    }
+
+    private Long insertPuzzle(SQLiteStatement insert, ImageEntity entity) {
+        byte[] image = encodeImage(entity);
+        boolean chunked = isOversized(image);
+        bindPuzzle(insert, entity, chunked ? null : image, chunked ? chunkCount(image.length) : 0);
+        long id = insert.executeInsert();
+        if (chunked) {
+            BlobChunks.write(writer(), PUZZLE_CHUNKS_TABLE, id, image);
+        }
+        return id;
+    }
+
+    private Long insertTile(SQLiteStatement insert, ImageEntity entity, long puzzleId) {
+        byte[] image = encodeImage(entity);
+        boolean chunked = isOversized(image);
+        bindTile(insert, entity, puzzleId, chunked ? null : image, chunked ? chunkCount(image.length) : 0);
+        long id = insert.executeInsert();
+        if (chunked) {
+            BlobChunks.write(writer(), TILE_CHUNKS_TABLE, id, image);
+        }
+        return id;
+    }
+
     private int getIndex(final Cursor cursor, final String col) {
         return cursor.getColumnIndex(col);
     }
+
+    /**
+     * Column indices of a tile cursor, looked up once per cursor
+     */
+    private static final class TileColumns {
+        private final int id;
+        private final int puzzle;
+        private final int row;
+        private final int col;
+        private final int image;
+        private final int chunks;
+
+        TileColumns(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(ID_COLUMN);
+            puzzle = cursor.getColumnIndexOrThrow(PUZZLE_COLUMN);
+            row = cursor.getColumnIndexOrThrow(ROW_COLUMN);
+            col = cursor.getColumnIndexOrThrow(COL_COLUMN);
+            image = cursor.getColumnIndexOrThrow(IMAGE_COLUMN);
+            chunks = cursor.getColumnIndexOrThrow(CHUNKS_COLUMN);
+        }
+    }
+
+    /**
+     * Column indices of a history cursor, looked up once per cursor
+     */
+    private static final class HistoryColumns {
+        private final int id;
+        private final int name;
+        private final int desc;
+        private final int thumbnail;
+
+        HistoryColumns(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(ID_COLUMN);
+            name = cursor.getColumnIndexOrThrow(NAME_COLUMN);
+            desc = cursor.getColumnIndexOrThrow(DESC_COLUMN);
+            thumbnail = cursor.getColumnIndexOrThrow(THUMBNAIL_COLUMN);
+        }
+    }
 }
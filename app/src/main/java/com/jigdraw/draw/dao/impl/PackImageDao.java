@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.dao.impl;
+
+import static com.jigdraw.draw.util.Constants.PACK_DIRECTORY;
+import static com.jigdraw.draw.util.DBUtil.ID_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.PACK_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.PUZZLES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.getIdArguments;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.jigdraw.draw.model.ImageEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link com.jigdraw.draw.dao.ImageDao} that writes the tiles of a puzzle into one {@link TilePack} file instead of
+ * the tiles table.  The puzzles table keeps the original, its thumbnail and the pack path relative to the app files
+ * directory.  Only the save is overridden, {@link ImageDaoImpl} reads and deletes the packs so that every backend
+ * handles the puzzles saved here.  Tiles read from a pack have no id.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class PackImageDao
+        extends ImageDaoImpl {
+
+    /** Class name for logging */
+    private static final String TAG = "PackImageDao";
+
+    /**
+     * Create new pack dao object with given context
+     *
+     * @param context the application context
+     */
+    public PackImageDao(Context context) {
+        super(context);
+    }
+
+    @Override
+    public Long createWithTiles(ImageEntity original, List<ImageEntity> tiles) {
+        Long originalId = null;
+        File pack = null;
+        boolean committed = false;
+        SQLiteDatabase db = writer();
+        try {
+            db.beginTransactionNonExclusive();
+            try {
+                originalId = super.createWithTiles(original, Collections.emptyList());
+                String path = PACK_DIRECTORY + File.separator + originalId + ".pack";
+                pack = new File(filesDir, path);
+                if (!pack.getParentFile().isDirectory() && !pack.getParentFile().mkdirs()) {
+                    throw new IOException("can't create pack directory " + pack.getParent());
+                }
+                TilePack.write(pack, tiles);
+
+                ContentValues cv = new ContentValues();
+                cv.put(PACK_COLUMN, path);
+                db.update(PUZZLES_TABLE, cv, ID_SELECTION, getIdArguments(originalId));
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            committed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write tile pack for puzzle " + originalId, e);
+        } finally {
+            // whatever made the save fail, a pack no puzzle row points at must not stay behind
+            if (!committed && pack != null && pack.exists() && !pack.delete()) {
+                Log.w(TAG, "failed to delete partial pack " + pack);
+            }
+        }
+        for (ImageEntity tile : tiles) {
+            tile.setOriginalId(originalId);
+        }
+        Log.d(TAG, "saved " + tiles.size() + " tiles to " + pack);
+
+        return originalId;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.dao.impl;
+
+import static com.jigdraw.draw.util.EntityUtil.encodeImage;
+
+import android.graphics.Bitmap;
+
+import com.jigdraw.draw.cache.BitmapPool;
+import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.util.ThreadPools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * File holding all the tiles of a puzzle.  The file starts with a header index of the tiles, each entry has the grid
+ * row and column with the offset and length of the compressed tile, and the tiles follow in grid order.  <p> The file
+ * is written once and read through a memory map, the tiles are decoded straight from the mapped pages in parallel.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+final class TilePack {
+
+    /** "JGPK" */
+    private static final int MAGIC = 0x4A47504B;
+
+    /** magic and tile count */
+    private static final int HEADER_SIZE = 8;
+
+    /** row, column, offset and length */
+    private static final int ENTRY_SIZE = 16;
+
+    private TilePack() {}
+
+    /**
+     * Write the tiles to a new pack file, synced to disk before returning
+     *
+     * @param file the pack file
+     * @param tiles the tiles in grid order
+     * @throws IOException if the file can't be written
+     */
+    static void write(File file, List<ImageEntity> tiles) throws IOException {
+        List<byte[]> images = new ArrayList<>(tiles.size());
+        for (ImageEntity tile : tiles) {
+            images.add(encodeImage(tile));
+        }
+
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(tiles.size());
+            int offset = HEADER_SIZE + ENTRY_SIZE * tiles.size();
+            for (int i = 0; i < tiles.size(); i++) {
+                out.writeInt(tiles.get(i).getRow());
+                out.writeInt(tiles.get(i).getCol());
+                out.writeInt(offset);
+                out.writeInt(images.get(i).length);
+                offset += images.get(i).length;
+            }
+            for (byte[] image : images) {
+                out.write(image);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Read the number of tiles in a pack file from its header
+     *
+     * @param file the pack file
+     * @return the number of tiles
+     * @throws IOException if the file can't be read or is not a pack
+     */
+    static int count(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("not a tile pack: " + file);
+            }
+            return raf.readInt();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read all the tiles of a pack file
+     *
+     * @param file the pack file
+     * @param originalId the id of the puzzle the tiles belong to
+     * @param maxWidth the largest width of a decoded tile in pixels
+     * @param maxHeight the largest height of a decoded tile in pixels
+     * @param decoder the executor decoding the tiles
+     * @param window the number of tiles decoded ahead of the one handed out
+     * @param consumer takes the tiles in grid order
+     * @return the number of tiles
+     * @throws IOException if the file can't be read or is not a pack
+     */
+    static int read(File file, Long originalId, int maxWidth, int maxHeight, ExecutorService decoder, int window,
+                    Consumer<ImageEntity> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a tile pack: " + file);
+        }
+        final int count = buffer.getInt(4);
+        final int[] next = {0};
+        return ThreadPools.runOrdered(decoder, () -> next[0] < count
+                ? readTile(buffer, originalId, next[0]++, maxWidth, maxHeight) : null, window, consumer);
+    }
+
+    /**
+     * Read the header entry of a tile and give the task decoding its slice of the pack
+     *
+     * @param buffer the mapped pack
+     * @param originalId the id of the puzzle the tile belongs to
+     * @param index the index of the entry
+     * @param maxWidth the largest width of the decoded tile in pixels
+     * @param maxHeight the largest height of the decoded tile in pixels
+     * @return the decode task
+     */
+    private static Callable<ImageEntity> readTile(ByteBuffer buffer, final Long originalId, int index,
+                                                  final int maxWidth, final int maxHeight) {
+        int entry = HEADER_SIZE + ENTRY_SIZE * index;
+        final int row = buffer.getInt(entry);
+        final int col = buffer.getInt(entry + 4);
+        int offset = buffer.getInt(entry + 8);
+        int length = buffer.getInt(entry + 12);
+
+        final ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return () -> {
+            Bitmap image = BitmapPool.getInstance().decode(() -> new ByteBufferInputStream(slice.duplicate()),
+                    maxWidth, maxHeight);
+            return new ImageEntity(image, originalId, row, col);
+        };
+    }
+
+    /**
+     * Stream over the remaining bytes of a buffer, no copy of the buffer is made
+     */
+    private static final class ByteBufferInputStream
+            extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
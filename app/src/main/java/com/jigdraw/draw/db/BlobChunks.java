@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.db;
+
+import static com.jigdraw.draw.util.DBUtil.CHUNK_COLUMNS;
+import static com.jigdraw.draw.util.DBUtil.CHUNK_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.CHUNK_SIZE;
+import static com.jigdraw.draw.util.DBUtil.CHUNK_THRESHOLD;
+import static com.jigdraw.draw.util.DBUtil.INSERT_CHUNK_ROW;
+import static com.jigdraw.draw.util.DBUtil.OWNER_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.getIdArguments;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Stores images too large for one row as fixed size chunk rows.  A cursor window holds at most 2 MB, so a full size
+ * drawing in a single cell can't be read back at all.  The chunks are written in one go and read back one chunk per
+ * query through a stream, so neither the cursor window nor the reader ever holds more than one chunk.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class BlobChunks {
+
+    private BlobChunks() {}
+
+    /**
+     * Check if the image bytes are too large to store in one row
+     *
+     * @param bytes the compressed image bytes
+     * @return true if the bytes must be chunked
+     */
+    public static boolean isOversized(byte[] bytes) {
+        return bytes != null && bytes.length > CHUNK_THRESHOLD;
+    }
+
+    /**
+     * Get the number of chunks for the given size
+     *
+     * @param length the size in bytes
+     * @return the number of chunks
+     */
+    public static int chunkCount(long length) {
+        return (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    /**
+     * Write the image bytes as chunk rows, should run inside the transaction that writes the owner row
+     *
+     * @param db the database
+     * @param table the chunks table
+     * @param ownerId the id of the puzzle or tile the image belongs to
+     * @param bytes the compressed image bytes
+     */
+    public static void write(SQLiteDatabase db, String table, long ownerId, byte[] bytes) {
+        SQLiteStatement insert = db.compileStatement(String.format(INSERT_CHUNK_ROW, table));
+        try {
+            int count = chunkCount(bytes.length);
+            for (int seq = 0; seq < count; seq++) {
+                int from = seq * CHUNK_SIZE;
+                insert.clearBindings();
+                insert.bindLong(1, ownerId);
+                insert.bindLong(2, seq);
+                insert.bindBlob(3, Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + CHUNK_SIZE)));
+                insert.executeInsert();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Delete the chunk rows of an image
+     *
+     * @param db the database
+     * @param table the chunks table
+     * @param ownerId the id of the puzzle or tile the image belongs to
+     */
+    public static void delete(SQLiteDatabase db, String table, long ownerId) {
+        db.delete(table, OWNER_SELECTION, getIdArguments(ownerId));
+    }
+
+    /**
+     * Open a stream over the chunk rows of an image
+     *
+     * @param db the database
+     * @param table the chunks table
+     * @param ownerId the id of the puzzle or tile the image belongs to
+     * @param chunks the number of chunks stored for the image
+     * @return the stream of the compressed image bytes
+     */
+    public static InputStream open(SQLiteDatabase db, String table, long ownerId, int chunks) {
+        return new ChunkInputStream(db, table, ownerId, chunks);
+    }
+
+    /**
+     * Read all the chunk rows of an image on the calling thread, for images decoded on a thread that must not query
+     *
+     * @param db the database
+     * @param table the chunks table
+     * @param ownerId the id of the puzzle or tile the image belongs to
+     * @param chunks the number of chunks stored for the image
+     * @return the compressed image bytes
+     * @throws IOException if a chunk is missing
+     */
+    public static byte[] read(SQLiteDatabase db, String table, long ownerId, int chunks) throws IOException {
+        String owner = String.valueOf(ownerId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(chunks * CHUNK_SIZE);
+        for (int seq = 0; seq < chunks; seq++) {
+            byte[] chunk = queryChunk(db, table, owner, seq);
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] queryChunk(SQLiteDatabase db, String table, String owner, int seq) throws IOException {
+        Cursor cursor = db.query(table, CHUNK_COLUMNS, CHUNK_SELECTION, new String[]{owner, String.valueOf(seq)},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                throw new IOException("missing chunk " + seq + " of " + table + " image " + owner);
+            }
+            return cursor.getBlob(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stream that queries the next chunk only once the current one is used up
+     */
+    private static final class ChunkInputStream
+            extends InputStream {
+        private final SQLiteDatabase db;
+        private final String table;
+        private final String owner;
+        private final int chunks;
+        private int next;
+        private byte[] chunk;
+        private int pos;
+
+        ChunkInputStream(SQLiteDatabase db, String table, long ownerId, int chunks) {
+            this.db = db;
+            this.table = table;
+            this.owner = String.valueOf(ownerId);
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk == null ? 0 : chunk.length - pos;
+        }
+
+        private boolean fill() throws IOException {
+            while (chunk == null || pos == chunk.length) {
+                if (next == chunks) {
+                    return false;
+                }
+                chunk = queryChunk(db, table, owner, next++);
+                pos = 0;
+            }
+            return true;
+        }
+    }
+}
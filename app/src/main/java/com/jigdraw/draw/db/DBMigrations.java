@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.db;
+
+import static com.jigdraw.draw.util.Constants.THUMBNAIL_SIZE;
+import static com.jigdraw.draw.util.DBUtil.CHUNKS_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.CHUNK_SIZE;
+import static com.jigdraw.draw.util.DBUtil.CHUNK_THRESHOLD;
+import static com.jigdraw.draw.util.DBUtil.ID_AFTER_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.ID_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.IMAGE_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.JIGSAW_TABLE;
+import static com.jigdraw.draw.util.DBUtil.JIGSAW_TABLE_V1;
+import static com.jigdraw.draw.util.DBUtil.MIGRATION_BATCH_SIZE;
+import static com.jigdraw.draw.util.DBUtil.NAME_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.ORIGINAL_SELECTION;
+import static com.jigdraw.draw.util.DBUtil.ORIGINAL_SELECTION_NULL;
+import static com.jigdraw.draw.util.DBUtil.PUZZLES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.THUMBNAIL_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.TILES_TABLE;
+import static com.jigdraw.draw.util.DBUtil.getIdArguments;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.graphics.Bitmap;
+import android.util.Base64;
+import android.util.Log;
+
+import com.jigdraw.draw.util.BitmapUtil;
+import com.jigdraw.draw.util.DBUtil;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Schema migrations run by {@link JigsawDB#onUpgrade(SQLiteDatabase, int, int)}, one method per version.  They all run
+ * inside the upgrade transaction.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+final class DBMigrations {
+
+    /** tag name for logging */
+    private static final String TAG = "DBMigrations";
+
+    /** copy a version 2 original into the puzzles table */
+    private static final String COPY_PUZZLES = "insert into " + DBUtil.PUZZLES_TABLE + " ("
+            + DBUtil.ID_COLUMN + ", " + DBUtil.NAME_COLUMN + ", " + DBUtil.IMAGE_COLUMN + ", " + DBUtil.DESC_COLUMN
+            + ") select " + DBUtil.ID_COLUMN + ", " + DBUtil.NAME_COLUMN + ", " + DBUtil.IMAGE_COLUMN + ", "
+            + DBUtil.DESC_COLUMN + " from " + JIGSAW_TABLE + " where " + ORIGINAL_SELECTION_NULL;
+
+    /** copy a version 2 tile into the tiles table with its grid position */
+    private static final String COPY_TILE = "insert into " + DBUtil.TILES_TABLE + " ("
+            + DBUtil.ID_COLUMN + ", " + DBUtil.PUZZLE_COLUMN + ", " + DBUtil.ROW_COLUMN + ", " + DBUtil.COL_COLUMN
+            + ", " + DBUtil.IMAGE_COLUMN + ") select " + DBUtil.ID_COLUMN + ", " + DBUtil.ORIGINAL_COLUMN
+            + ", ?, ?, " + DBUtil.IMAGE_COLUMN + " from " + JIGSAW_TABLE + " where " + DBUtil.ID_SELECTION;
+
+    /** set the thumbnail of a puzzle */
+    private static final String UPDATE_THUMBNAIL = "update " + PUZZLES_TABLE + " set " + THUMBNAIL_COLUMN
+            + " = ? where " + DBUtil.ID_SELECTION;
+
+    /** ids and sizes of the images too large for one row, the table name is filled in with {@link String#format} */
+    private static final String SELECT_OVERSIZED = "select " + DBUtil.ID_COLUMN + ", length(" + DBUtil.IMAGE_COLUMN
+            + ") from %s where length(" + DBUtil.IMAGE_COLUMN + ") > " + CHUNK_THRESHOLD;
+
+    /** one chunk of an image still stored in its row, substr counts bytes from 1 on blobs */
+    private static final String SELECT_IMAGE_RANGE = "select substr(" + DBUtil.IMAGE_COLUMN + ", ?, " + CHUNK_SIZE
+            + ") from %s where " + DBUtil.ID_SELECTION;
+
+    /** the image or null when it is too large to read in one row, read in ranges instead */
+    private static final String IMAGE_IF_NOT_OVERSIZED = "case when length(" + DBUtil.IMAGE_COLUMN + ") > "
+            + CHUNK_THRESHOLD + " then null else " + DBUtil.IMAGE_COLUMN + " end";
+
+    /** length of the image, in characters for the version 1 base64 text and in bytes for blobs */
+    private static final String IMAGE_LENGTH = "length(" + DBUtil.IMAGE_COLUMN + ")";
+
+    /** version 1 columns, the image is left out of the row when it is oversized */
+    private static final String[] V1_COLUMNS = new String[]{ID_COLUMN, NAME_COLUMN, IMAGE_IF_NOT_OVERSIZED,
+            DBUtil.DESC_COLUMN, DBUtil.ORIGINAL_COLUMN, IMAGE_LENGTH};
+
+    /** puzzle columns read for the thumbnails, the image is left out of the row when it is oversized */
+    private static final String[] THUMBNAIL_SOURCE_COLUMNS = new String[]{ID_COLUMN, IMAGE_IF_NOT_OVERSIZED,
+            IMAGE_LENGTH};
+
+    /** version 2 index used only while the tiles are being moved */
+    private static final String CREATE_ORIGINAL_INDEX = "create index if not exists " + JIGSAW_TABLE
+            + "_original on " + JIGSAW_TABLE + " (" + DBUtil.ORIGINAL_COLUMN + ")";
+
+    private DBMigrations() {}
+
+    /**
+     * Version 2 stores the compressed image bytes as a BLOB instead of a base64 string.  The version 1 table is moved
+     * aside and its rows are copied over in id order, one batch at a time, so that only a few images are held in
+     * memory at once.  The base64 text is decoded straight to the PNG bytes it wraps, no bitmap is re-encoded.  Text
+     * too large for one cursor window is read in ranges.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateImagesToBlobs(SQLiteDatabase db) {
+        db.execSQL(DBUtil.RENAME_JIGSAW_TABLE_V1);
+        db.execSQL(DBUtil.CREATE_JIGSAW_TABLE);
+
+        SQLiteStatement insert = db.compileStatement(DBUtil.INSERT_JIGSAW_ROW);
+        long lastId = -1;
+        int converted = 0;
+        int batch;
+        try {
+            do {
+                batch = 0;
+                Cursor cursor = db.query(JIGSAW_TABLE_V1, V1_COLUMNS, ID_AFTER_SELECTION, getIdArguments(lastId),
+                        null, null, ID_COLUMN, String.valueOf(MIGRATION_BATCH_SIZE));
+                try {
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getLong(0);
+                        insert.clearBindings();
+                        insert.bindLong(1, lastId);
+                        bindText(insert, 2, cursor, 1);
+                        if (!cursor.isNull(2)) {
+                            insert.bindBlob(3, Base64.decode(cursor.getString(2), Base64.DEFAULT));
+                        } else if (!cursor.isNull(5)) {
+                            String text = readText(db, JIGSAW_TABLE_V1, lastId, cursor.getLong(5));
+                            insert.bindBlob(3, Base64.decode(text, Base64.DEFAULT));
+                        }
+                        bindText(insert, 4, cursor, 3);
+                        if (!cursor.isNull(4)) {
+                            insert.bindLong(5, cursor.getLong(4));
+                        }
+                        insert.executeInsert();
+                        batch++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+                converted += batch;
+            } while (batch == MIGRATION_BATCH_SIZE);
+        } finally {
+            insert.close();
+        }
+
+        db.execSQL(DBUtil.DROP_JIGSAW_TABLE_V1);
+        Log.d(TAG, "converted " + converted + " images to blobs");
+    }
+
+    /**
+     * Version 3 splits the jigsaw_images table into puzzles and tiles.  The image blobs are copied inside sqlite, only
+     * the tile names are read to work out the grid positions: a tile named tile-x-y.png was cut at pixel (x, y) and
+     * every tile of a puzzle has the same size, so the smallest non zero x and y give the tile width and height.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateToPuzzlesAndTiles(SQLiteDatabase db) {
+        createPuzzlesAndTiles(db);
+        db.execSQL(COPY_PUZZLES);
+        db.execSQL(CREATE_ORIGINAL_INDEX);
+
+        SQLiteStatement copyTile = db.compileStatement(COPY_TILE);
+        Cursor puzzles = db.query(DBUtil.PUZZLES_TABLE, new String[]{ID_COLUMN}, null, null, null, null, ID_COLUMN);
+        try {
+            while (puzzles.moveToNext()) {
+                copyTiles(db, copyTile, puzzles.getLong(0));
+            }
+        } finally {
+            puzzles.close();
+            copyTile.close();
+        }
+
+        db.execSQL(DBUtil.DROP_JIGSAW_TABLE);
+    }
+
+    /**
+     * Version 4 adds a thumbnail column to the puzzles so that the history never decodes the full size images.  The
+     * thumbnails of existing puzzles are generated in id order, one batch at a time.  Images too large for one cursor
+     * window are read in ranges.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateToThumbnails(SQLiteDatabase db) {
+        addColumnIfMissing(db, PUZZLES_TABLE, THUMBNAIL_COLUMN, "BLOB");
+
+        SQLiteStatement update = db.compileStatement(UPDATE_THUMBNAIL);
+        long lastId = -1;
+        int batch;
+        try {
+            do {
+                batch = 0;
+                Cursor cursor = db.query(PUZZLES_TABLE, THUMBNAIL_SOURCE_COLUMNS, ID_AFTER_SELECTION,
+                        getIdArguments(lastId), null, null, ID_COLUMN, String.valueOf(MIGRATION_BATCH_SIZE));
+                try {
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getLong(0);
+                        batch++;
+                        byte[] bytes = cursor.isNull(1) && !cursor.isNull(2)
+                                ? readImage(db, PUZZLES_TABLE, lastId, cursor.getLong(2)) : cursor.getBlob(1);
+                        Bitmap original = bytes == null ? null : BitmapUtil.bytesToBitmap(bytes);
+                        if (original == null) {
+                            continue;
+                        }
+                        Bitmap thumbnail = BitmapUtil.createThumbnail(original, THUMBNAIL_SIZE);
+                        update.clearBindings();
+                        update.bindBlob(1, BitmapUtil.bitmapToBytes(thumbnail));
+                        update.bindLong(2, lastId);
+                        update.executeUpdateDelete();
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (batch == MIGRATION_BATCH_SIZE);
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * Version 5 stores images too large for one cursor window as chunk rows.  Existing oversized images are moved out
+     * of their rows one chunk at a time with substr, so they are never read whole.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateToChunkedImages(SQLiteDatabase db) {
+        addColumnIfMissing(db, PUZZLES_TABLE, CHUNKS_COLUMN, "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing(db, TILES_TABLE, CHUNKS_COLUMN, "INTEGER NOT NULL DEFAULT 0");
+        db.execSQL(DBUtil.CREATE_PUZZLE_CHUNKS_TABLE);
+        db.execSQL(DBUtil.CREATE_TILE_CHUNKS_TABLE);
+
+        chunkOversizedImages(db, PUZZLES_TABLE, DBUtil.PUZZLE_CHUNKS_TABLE);
+        chunkOversizedImages(db, TILES_TABLE, DBUtil.TILE_CHUNKS_TABLE);
+    }
+
+    /**
+     * Version 6 adds the path of the tile pack file to the puzzles.  Puzzles saved before have their tiles in the tiles
+     * table and keep a null path.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateToTilePacks(SQLiteDatabase db) {
+        addColumnIfMissing(db, PUZZLES_TABLE, DBUtil.PACK_COLUMN, "TEXT");
+    }
+
+    /**
+     * Version 7 adds the grid size to the puzzles, set for the puzzles saved without tiles which are cut from the
+     * original when loaded.
+     *
+     * @param db the database being upgraded
+     */
+    static void migrateToGridSize(SQLiteDatabase db) {
+        addColumnIfMissing(db, PUZZLES_TABLE, DBUtil.GRID_COLUMN, "INTEGER");
+    }
+
+    /**
+     * Create the puzzles and tiles tables with their index and chunks tables
+     *
+     * @param db the database
+     */
+    static void createPuzzlesAndTiles(SQLiteDatabase db) {
+        db.execSQL(DBUtil.CREATE_PUZZLES_TABLE);
+        db.execSQL(DBUtil.CREATE_TILES_TABLE);
+        db.execSQL(DBUtil.CREATE_TILES_PUZZLE_INDEX);
+        db.execSQL(DBUtil.CREATE_PUZZLE_CHUNKS_TABLE);
+        db.execSQL(DBUtil.CREATE_TILE_CHUNKS_TABLE);
+    }
+
+    private static void chunkOversizedImages(SQLiteDatabase db, String table, String chunksTable) {
+        Cursor cursor = db.rawQuery(String.format(SELECT_OVERSIZED, table), null);
+        long[] ids = new long[cursor.getCount()];
+        long[] lengths = new long[ids.length];
+        try {
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                lengths[i] = cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        SQLiteStatement insert = db.compileStatement(String.format(DBUtil.INSERT_CHUNK_ROW, chunksTable));
+        SQLiteStatement update = db.compileStatement("update " + table + " set " + IMAGE_COLUMN + " = null, "
+                + CHUNKS_COLUMN + " = ? where " + DBUtil.ID_SELECTION);
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                int count = BlobChunks.chunkCount(lengths[i]);
+                for (int seq = 0; seq < count; seq++) {
+                    insert.clearBindings();
+                    insert.bindLong(1, ids[i]);
+                    insert.bindLong(2, seq);
+                    insert.bindBlob(3, readImageRange(db, table, ids[i], (long) seq * CHUNK_SIZE));
+                    insert.executeInsert();
+                }
+                update.clearBindings();
+                update.bindLong(1, count);
+                update.bindLong(2, ids[i]);
+                update.executeUpdateDelete();
+            }
+        } finally {
+            insert.close();
+            update.close();
+        }
+        Log.d(TAG, "moved " + ids.length + " oversized images of " + table + " to chunks");
+    }
+
+    /**
+     * Read an image blob too large for one cursor window in chunk sized ranges
+     *
+     * @param db the database being upgraded
+     * @param table the table of the image
+     * @param id the row id
+     * @param length the image size in bytes
+     * @return the image bytes
+     */
+    private static byte[] readImage(SQLiteDatabase db, String table, long id, long length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+        for (long offset = 0; offset < length; offset += CHUNK_SIZE) {
+            byte[] range = readImageRange(db, table, id, offset);
+            out.write(range, 0, range.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read a version 1 base64 image too large for one cursor window in chunk sized ranges, substr counts characters
+     * on text
+     *
+     * @param db the database being upgraded
+     * @param table the table of the image
+     * @param id the row id
+     * @param length the text length in characters
+     * @return the base64 text
+     */
+    private static String readText(SQLiteDatabase db, String table, long id, long length) {
+        StringBuilder text = new StringBuilder((int) length);
+        for (long offset = 0; offset < length; offset += CHUNK_SIZE) {
+            Cursor cursor = db.rawQuery(String.format(SELECT_IMAGE_RANGE, table),
+                    new String[]{String.valueOf(offset + 1), String.valueOf(id)});
+            try {
+                cursor.moveToFirst();
+                text.append(cursor.getString(0));
+            } finally {
+                cursor.close();
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] readImageRange(SQLiteDatabase db, String table, long id, long offset) {
+        Cursor cursor = db.rawQuery(String.format(SELECT_IMAGE_RANGE, table),
+                new String[]{String.valueOf(offset + 1), String.valueOf(id)});
+        try {
+            cursor.moveToFirst();
+            return cursor.getBlob(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void copyTiles(SQLiteDatabase db, SQLiteStatement copyTile, long puzzleId) {
+        Cursor cursor = db.query(JIGSAW_TABLE, new String[]{ID_COLUMN, NAME_COLUMN}, ORIGINAL_SELECTION,
+                getIdArguments(puzzleId), null, null, ID_COLUMN);
+        try {
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            int tileWidth = Integer.MAX_VALUE;
+            int tileHeight = Integer.MAX_VALUE;
+            int parsed = 0;
+            while (cursor.moveToNext()) {
+                int[] point = parseTileName(cursor.getString(1));
+                if (point == null) {
+                    Log.w(TAG, "skipping tile with unexpected name: " + cursor.getString(1));
+                    continue;
+                }
+                ids[parsed] = cursor.getLong(0);
+                xs[parsed] = point[0];
+                ys[parsed] = point[1];
+                tileWidth = point[0] > 0 ? Math.min(tileWidth, point[0]) : tileWidth;
+                tileHeight = point[1] > 0 ? Math.min(tileHeight, point[1]) : tileHeight;
+                parsed++;
+            }
+
+            for (int i = 0; i < parsed; i++) {
+                copyTile.clearBindings();
+                copyTile.bindLong(1, ys[i] / tileHeight);
+                copyTile.bindLong(2, xs[i] / tileWidth);
+                copyTile.bindLong(3, ids[i]);
+                copyTile.executeInsert();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Add a column to a table unless it is already there.  Tables created by an earlier migration already have the
+     * current shape, only tables created by an older version of the app need the column.
+     *
+     * @param db the database being upgraded
+     * @param table the table name
+     * @param column the column name
+     * @param type the column type
+     */
+    private static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String type) {
+        Cursor cursor = db.rawQuery("pragma table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) {
+                    return;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL("alter table " + table + " add column " + column + " " + type);
+    }
+
+    /**
+     * Parse the pixel coordinates from a version 2 tile name tile-x-y.png
+     *
+     * @param name the tile name
+     * @return the x and y coordinates or null if the name does not match
+     */
+    private static int[] parseTileName(String name) {
+        if (name == null || !name.startsWith("tile-") || !name.endsWith(".png")) {
+            return null;
+        }
+        String[] parts = name.substring(5, name.length() - 4).split("-");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void bindText(SQLiteStatement statement, int index, Cursor cursor, int column) {
+        if (!cursor.isNull(column)) {
+            statement.bindString(index, cursor.getString(column));
+        }
+    }
+}
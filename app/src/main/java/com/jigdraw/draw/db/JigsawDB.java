@@ -24,11 +24,13 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
-import com.jigdraw.draw.util.DBUtil;
-
 
 /**
- * Database helper that extends the {@link SQLiteOpenHelper} for database manipulations.
+ * Database helper that extends the {@link SQLiteOpenHelper} for database manipulations.  There is one helper per
+ * process so the database is opened and its schema checked once, the first time a dao or the provider uses it rather
+ * than when they are created.  The opened {@link SQLiteDatabase} is thread safe and shared by all of them.  <p> The
+ * database is in write ahead logging mode, it keeps a pool of read connections next to the single write connection so
+ * that loading the history or a puzzle is not held up by a puzzle being saved.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
@@ -38,25 +40,74 @@ public class JigsawDB
     /** tag name for logging */
     private static final String TAG = "JigsawDB";
 
+    /** the process wide helper */
+    private static JigsawDB instance;
+
     /**
      * Create new db helper given application context
      *
      * @param context the application context
      */
-    public JigsawDB(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private JigsawDB(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Create a db helper for another database file, used by the tests to upgrade a database of their own
+     *
+     * @param context the application context
+     * @param name the database file name
+     */
+    JigsawDB(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Get the process wide db helper, the database itself is only opened by the first call to {@link
+     * #getWritableDatabase()} which should be made off the main thread
+     *
+     * @param context any context, only the application context is kept
+     * @return the db helper
+     */
+    public static synchronized JigsawDB getInstance(Context context) {
+        if (instance == null) {
+            instance = new JigsawDB(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+        db.enableWriteAheadLogging();
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        Log.d(TAG, "creating table jigsaw_images if it doesn't exist");
-        db.execSQL(DBUtil.CREATE_JIGSAW_TABLE);
+        Log.d(TAG, "creating tables puzzles and tiles if they don't exist");
+        DBMigrations.createPuzzlesAndTiles(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         Log.d(TAG, "Upgrading database from " + oldVersion + "to " + newVersion);
-        db.execSQL(DBUtil.DROP_JIGSAW_TABLE);
-        onCreate(db);
+        if (oldVersion < 2) {
+            DBMigrations.migrateImagesToBlobs(db);
+        }
+        if (oldVersion < 3) {
+            DBMigrations.migrateToPuzzlesAndTiles(db);
+        }
+        if (oldVersion < 4) {
+            DBMigrations.migrateToThumbnails(db);
+        }
+        if (oldVersion < 5) {
+            DBMigrations.migrateToChunkedImages(db);
+        }
+        if (oldVersion < 6) {
+            DBMigrations.migrateToTilePacks(db);
+        }
+        if (oldVersion < 7) {
+            DBMigrations.migrateToGridSize(db);
+        }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model;
+
+import java.util.Arrays;
+
+/**
+ * Arrangement of the tiles on a puzzle board.  Tiles are numbered by their index in the list the board was created
+ * from, and the number of a tile is also its stable id.  The arrangement is held both ways in primitive arrays,
+ * position to tile and tile to position, so that swaps and lookups either way take constant time, allocate nothing
+ * and box nothing.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class BoardModel {
+    private final int[] tileAt;
+    private final int[] positionOf;
+
+    /**
+     * Create a board with every tile at the position of its number
+     *
+     * @param size the number of tiles
+     */
+    public BoardModel(int size) {
+        tileAt = new int[size];
+        positionOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            tileAt[i] = i;
+            positionOf[i] = i;
+        }
+    }
+
+    /**
+     * Create a board from an arrangement
+     *
+     * @param tiles the tile at each position, every tile from 0 to the number of tiles exactly once
+     * @throws IllegalArgumentException if the arrangement is not a permutation
+     */
+    public BoardModel(int[] tiles) {
+        tileAt = tiles.clone();
+        positionOf = new int[tiles.length];
+        Arrays.fill(positionOf, -1);
+        for (int position = 0; position < tiles.length; position++) {
+            int tile = tiles[position];
+            if (tile < 0 || tile >= tiles.length || positionOf[tile] != -1) {
+                throw new IllegalArgumentException("not an arrangement of the tiles: " + Arrays.toString(tiles));
+            }
+            positionOf[tile] = position;
+        }
+    }
+
+    /**
+     * Get the number of tiles
+     *
+     * @return the number of tiles
+     */
+    public int size() {
+        return tileAt.length;
+    }
+
+    /**
+     * Get the tile at a position
+     *
+     * @param position the position
+     * @return the tile number
+     */
+    public int tileAt(int position) {
+        return tileAt[position];
+    }
+
+    /**
+     * Get the position of a tile
+     *
+     * @param tile the tile number
+     * @return the position
+     */
+    public int positionOf(int tile) {
+        return positionOf[tile];
+    }
+
+    /**
+     * Get the index of the child view showing a tile, for a view that lays out the board from a first visible
+     * position.  The index follows the arrangement as it is updated by swaps and the view's first position as it is
+     * updated by layout, so no scan of the children is needed.
+     *
+     * @param tile the tile number
+     * @param firstPosition the position of the first child view
+     * @param childCount the number of child views
+     * @return the child index or -1 if the tile is not on a child view
+     */
+    public int childIndexOf(int tile, int firstPosition, int childCount) {
+        if (tile < 0 || tile >= positionOf.length) {
+            return -1;
+        }
+        int index = positionOf[tile] - firstPosition;
+        return index >= 0 && index < childCount ? index : -1;
+    }
+
+    /**
+     * Swap the tiles at two positions
+     *
+     * @param first the first position
+     * @param second the second position
+     */
+    public void swap(int first, int second) {
+        int firstTile = tileAt[first];
+        int secondTile = tileAt[second];
+        tileAt[first] = secondTile;
+        tileAt[second] = firstTile;
+        positionOf[firstTile] = second;
+        positionOf[secondTile] = first;
+    }
+}
@@ -18,19 +18,25 @@ package com.jigdraw.draw.model;
 
 import android.graphics.Bitmap;
 
-import com.jigdraw.draw.util.Base64Util;
+import java.util.Objects;
 
 /**
- * Entity to encapsulate image attributes
+ * Entity to encapsulate image attributes.  The image and thumbnail are lazy handles decoded on first access, so that
+ * reads only needing the names or ids don't pay for decoding pixels.  Identity is based on the id and the cheap fields,
+ * never on the pixels.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
 public class ImageEntity {
-    private Bitmap image;
+    private LazyImage image;
+    private LazyImage thumbnail;
+    private byte[] encoded;
     private String name;
     private String desc;
     private Long originalId;
     private Long id;
+    private int row;
+    private int col;
 
     public ImageEntity() {
 
@@ -44,12 +50,27 @@ public class ImageEntity {
      * @param desc the description
      */
     public ImageEntity(Bitmap image, String name, String desc, Long originalId) {
-        this.image = image;
+        this.image = LazyImage.of(image);
         this.name = name;
         this.desc = desc;
         this.originalId = originalId;
     }
 
+    /**
+     * Create new tile entity given the parameters
+     *
+     * @param image the tile as bitmap
+     * @param originalId the id of the original image
+     * @param row the tile's row in the grid
+     * @param col the tile's column in the grid
+     */
+    public ImageEntity(Bitmap image, Long originalId, int row, int col) {
+        this.image = LazyImage.of(image);
+        this.originalId = originalId;
+        this.row = row;
+        this.col = col;
+    }
+
     public Long getId() {
         return id;
     }
@@ -58,14 +79,64 @@ public class ImageEntity {
         this.id = id;
     }
 
+    /**
+     * Get the image, decoding it on the calling thread on first access
+     *
+     * @return the image
+     */
     public Bitmap getImage() {
-        return image;
+        return image == null ? null : image.get();
     }
 
     public void setImage(Bitmap image) {
+        this.image = LazyImage.of(image);
+    }
+
+    public LazyImage getImageSource() {
+        return image;
+    }
+
+    public void setImageSource(LazyImage image) {
         this.image = image;
     }
 
+    /**
+     * Get the thumbnail, decoding it on the calling thread on first access
+     *
+     * @return the thumbnail
+     */
+    public Bitmap getThumbnail() {
+        return thumbnail == null ? null : thumbnail.get();
+    }
+
+    public void setThumbnail(Bitmap thumbnail) {
+        this.thumbnail = LazyImage.of(thumbnail);
+    }
+
+    public LazyImage getThumbnailSource() {
+        return thumbnail;
+    }
+
+    public void setThumbnailSource(LazyImage thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
+    /**
+     * The compressed bytes of the image when it was encoded ahead of saving or read and not yet decoded, null otherwise
+     *
+     * @return the compressed image
+     */
+    public byte[] getEncoded() {
+        if (encoded == null && image != null) {
+            return image.getBytes();
+        }
+        return encoded;
+    }
+
+    public void setEncoded(byte[] encoded) {
+        this.encoded = encoded;
+    }
+
     public String getDesc() {
         return desc;
     }
@@ -90,11 +161,30 @@ public class ImageEntity {
         this.originalId = originalId;
     }
 
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public void setCol(int col) {
+        this.col = col;
+    }
+
     @Override
     public int hashCode() {
-        int result = image.hashCode();
-        result = 31 * result + name.hashCode();
-        result = 31 * result + desc.hashCode();
+        int result = Objects.hashCode(id);
+        result = 31 * result + Objects.hashCode(originalId);
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + Objects.hashCode(desc);
+        result = 31 * result + row;
+        result = 31 * result + col;
         return result;
     }
 
@@ -107,14 +197,15 @@ public class ImageEntity {
 
         ImageEntity entity = (ImageEntity) o;
 
-        return desc.equals(entity.desc) && image.equals(entity.image)
-                && name.equals(entity.name);
+        return Objects.equals(id, entity.id) && Objects.equals(originalId, entity.originalId)
+                && Objects.equals(name, entity.name) && Objects.equals(desc, entity.desc)
+                && row == entity.row && col == entity.col;
     }
 
     @Override
     public String toString() {
-        return "ImageEntity{" + "image string="
-                + Base64Util.bitMapToBase64(image) + ", name='" + name + '\''
-                + ", desc='" + desc + '\'' + '}';
+        return "ImageEntity{" + "id=" + id + ", originalId=" + originalId + ", name='" + name + '\''
+                + ", desc='" + desc + '\'' + ", row=" + row + ", col=" + col
+                + ", decoded=" + (image != null && image.isDecoded()) + '}';
     }
 }
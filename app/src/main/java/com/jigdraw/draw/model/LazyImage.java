@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model;
+
+import android.graphics.Bitmap;
+
+import com.jigdraw.draw.util.BitmapUtil;
+
+import java.util.function.Supplier;
+
+/**
+ * Handle on the pixels of an image that are decoded on first access.  The handle holds either the decoded bitmap, the
+ * compressed bytes of the image or a loader reading the image from where it is stored.  The bytes or the loader are
+ * dropped once the image is decoded.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class LazyImage {
+    private Bitmap bitmap;
+    private byte[] bytes;
+    private Supplier<Bitmap> loader;
+
+    private LazyImage(Bitmap bitmap, byte[] bytes, Supplier<Bitmap> loader) {
+        this.bitmap = bitmap;
+        this.bytes = bytes;
+        this.loader = loader;
+    }
+
+    /**
+     * Handle on an image already decoded
+     *
+     * @param bitmap the image
+     * @return the handle or null if there is no image
+     */
+    public static LazyImage of(Bitmap bitmap) {
+        return bitmap == null ? null : new LazyImage(bitmap, null, null);
+    }
+
+    /**
+     * Handle on the compressed bytes of an image
+     *
+     * @param bytes the compressed image
+     * @return the handle or null if there are no bytes
+     */
+    public static LazyImage ofBytes(byte[] bytes) {
+        return bytes == null ? null : new LazyImage(null, bytes, null);
+    }
+
+    /**
+     * Handle on an image read from storage when first accessed
+     *
+     * @param loader reads and decodes the image
+     * @return the handle
+     */
+    public static LazyImage ofLoader(Supplier<Bitmap> loader) {
+        return new LazyImage(null, null, loader);
+    }
+
+    /**
+     * Get the image, decoding it on the calling thread if it wasn't yet
+     *
+     * @return the image or null if it can't be decoded
+     */
+    public synchronized Bitmap get() {
+        if (bitmap == null && bytes != null) {
+            bitmap = BitmapUtil.bytesToBitmap(bytes);
+        } else if (bitmap == null && loader != null) {
+            bitmap = loader.get();
+        }
+        bytes = null;
+        loader = null;
+        return bitmap;
+    }
+
+    /**
+     * The compressed bytes of the image while it is not decoded
+     *
+     * @return the compressed image or null if it was decoded or is only referenced in storage
+     */
+    public synchronized byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Whether the image was decoded
+     *
+     * @return true if decoded
+     */
+    public synchronized boolean isDecoded() {
+        return bitmap != null;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model.enums;
+
+/**
+ * Which view the puzzle board is shown in
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public enum BoardType {
+    /** the grid view swapping cells with its own hover animation */
+    GRID,
+
+    /** the recycler view rebinding only the cells that moved */
+    RECYCLER;
+
+    public static BoardType fromName(String name) {
+        for (BoardType type : values()) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return GRID;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model.enums;
+
+/**
+ * Order in which the holders of decoded bitmaps give them up under memory pressure, the first ones go first
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public enum EvictionPriority {
+    /** bitmaps kept only to save a decode later, dropped as soon as memory runs low */
+    CACHE,
+
+    /** bitmaps of a screen that can load them again when they are shown, dropped when memory is critical */
+    RELOADABLE,
+
+    /**
+     * recycled bitmaps the other holders give back when they release theirs, emptied last at every trim level so that
+     * nothing released after it refills it
+     */
+    POOL,
+
+    /** bitmaps that can't be rebuilt without losing state, only accounted for */
+    PINNED
+}
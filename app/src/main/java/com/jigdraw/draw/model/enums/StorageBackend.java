@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model.enums;
+
+/**
+ * Where the tiles of a puzzle are stored
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public enum StorageBackend {
+    /** tiles are rows of the tiles table */
+    SQLITE,
+
+    /** tiles are packed into one file per puzzle, only the path is in the database */
+    PACK,
+
+    /** only the original and the grid size are stored, tiles are cut from the original when loaded */
+    LAZY;
+
+    public static StorageBackend fromName(String name) {
+        for (StorageBackend backend : values()) {
+            if (backend.name().equals(name)) {
+                return backend;
+            }
+        }
+        return SQLITE;
+    }
+}
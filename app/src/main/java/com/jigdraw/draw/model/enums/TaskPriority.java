@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model.enums;
+
+/**
+ * Priority of a scheduled task, tasks with a higher priority are started first
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public enum TaskPriority {
+    /** a screen is waiting on the result */
+    INTERACTIVE,
+
+    /** long running work the user is not watching */
+    BACKGROUND
+}
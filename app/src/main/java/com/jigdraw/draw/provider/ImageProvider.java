@@ -17,7 +17,7 @@
 package com.jigdraw.draw.provider;
 
 import static com.jigdraw.draw.util.DBUtil.ID_SELECTION;
-import static com.jigdraw.draw.util.DBUtil.JIGSAW_TABLE;
+import static com.jigdraw.draw.util.DBUtil.PUZZLES_TABLE;
 
 import android.content.ContentProvider;
 import android.content.ContentUris;
@@ -31,6 +31,7 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
+import com.jigdraw.draw.cache.TileCache;
 import com.jigdraw.draw.db.JigsawDB;
 
 /**
@@ -52,21 +53,20 @@ public class ImageProvider
         uriMatcher.addURI(PROVIDER_NAME, "jisaw_images/#", IMAGES_ID);
     }
 
-    private SQLiteDatabase db;
+    private JigsawDB dbHelper;
 
     @Override
     public boolean onCreate() {
-        JigsawDB dbHelper = new JigsawDB(getContext());
-        db = dbHelper.getWritableDatabase();
+        dbHelper = JigsawDB.getInstance(getContext());
 
-        return db != null;
+        return true;
     }
 
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
-        queryBuilder.setTables(JIGSAW_TABLE);
+        queryBuilder.setTables(PUZZLES_TABLE);
 
         switch (uriMatcher.match(uri)) {
             case IMAGES_ID:
@@ -75,7 +75,7 @@ public class ImageProvider
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
-        Cursor cursor = queryBuilder.query(db, projection, selection,
+        Cursor cursor = queryBuilder.query(dbHelper.getReadableDatabase(), projection, selection,
                 selectionArgs, null, null, sortOrder);
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
 
@@ -96,7 +96,7 @@ public class ImageProvider
 
     @Override
     public Uri insert(Uri uri, ContentValues values) {
-        long row = db.insert(JIGSAW_TABLE, "", values);
+        long row = db().insert(PUZZLES_TABLE, "", values);
 
         if (row > 0) {
             Uri newUri = ContentUris.withAppendedId(CONTENT_URI, row);
@@ -112,11 +112,11 @@ public class ImageProvider
 
         switch (uriMatcher.match(uri)) {
             case IMAGES:
-                count = db.delete(JIGSAW_TABLE, selection, selectionArgs);
+                count = db().delete(PUZZLES_TABLE, selection, selectionArgs);
                 break;
             case IMAGES_ID:
                 String id = uri.getLastPathSegment();
-                count = db.delete(JIGSAW_TABLE,
+                count = db().delete(PUZZLES_TABLE,
                         ID_SELECTION
                                 + id
                                 + (!TextUtils.isEmpty(selection) ? " AND ("
@@ -126,6 +126,9 @@ public class ImageProvider
                 throw new IllegalArgumentException("Unsupported URI " + uri);
         }
 
+        if (count > 0) {
+            TileCache.getInstance().clear();
+        }
         getContext().getContentResolver().notifyChange(uri, null);
         return count;
     }
@@ -137,11 +140,11 @@ public class ImageProvider
 
         switch (uriMatcher.match(uri)) {
             case IMAGES:
-                count = db.update(JIGSAW_TABLE, values, selection, selectionArgs);
+                count = db().update(PUZZLES_TABLE, values, selection, selectionArgs);
                 break;
             case IMAGES_ID:
-                count = db.update(
-                        JIGSAW_TABLE,
+                count = db().update(
+                        PUZZLES_TABLE,
                         values,
                         ID_SELECTION
                                 + uri.getLastPathSegment()
@@ -154,4 +157,13 @@ public class ImageProvider
         getContext().getContentResolver().notifyChange(uri, null);
         return count;
     }
+
+    /**
+     * Get the shared database, opened on the first request rather than at startup on the main thread
+     *
+     * @return the database
+     */
+    private SQLiteDatabase db() {
+        return dbHelper.getWritableDatabase();
+    }
 }
@@ -16,20 +16,35 @@
 
 package com.jigdraw.draw.service.impl;
 
+import static com.jigdraw.draw.util.Constants.THUMBNAIL_SIZE;
+import static com.jigdraw.draw.util.GridUtil.tileRect;
+
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.jigdraw.draw.dao.ImageDao;
-import com.jigdraw.draw.dao.impl.ImageDaoImpl;
+import com.jigdraw.draw.dao.ImageDaoFactory;
 import com.jigdraw.draw.model.ImageEntity;
 import com.jigdraw.draw.model.enums.Difficulty;
+import com.jigdraw.draw.model.enums.StorageBackend;
 import com.jigdraw.draw.service.JigsawService;
+import com.jigdraw.draw.util.BitmapUtil;
+import com.jigdraw.draw.util.ThreadPools;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
- * Default implementation for {@link com.jigdraw.draw.service.JigsawService}
+ * Default implementation for {@link com.jigdraw.draw.service.JigsawService}.  The tiles are sliced and compressed in
+ * parallel on the compute pool while the original is compressed, then saved in grid order so the ids come out the
+ * same as with a serial save.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
@@ -42,81 +57,113 @@ public class JigsawServiceImpl
     /** Image entity dao */
     private ImageDao dao;
 
+    /** Whether tiles are cut when loaded instead of saved */
+    private boolean lazy;
+
+    /** Executor slicing and compressing the images */
+    private ExecutorService encoder;
+
     /**
-     * Create new jigsaw service given context
+     * Create new jigsaw service given context, saving to the selected storage backend
      *
      * @param context the application context
      */
     public JigsawServiceImpl(Context context) {
-        dao = new ImageDaoImpl(context);
+        this(context, ImageDaoFactory.getBackend(context));
+    }
+
+    /**
+     * Create new jigsaw service saving to the given storage backend
+     *
+     * @param context the application context
+     * @param backend the storage backend
+     */
+    public JigsawServiceImpl(Context context, StorageBackend backend) {
+        this(context, backend, ThreadPools.compute());
+    }
+
+    /**
+     * Create new jigsaw service saving to the given storage backend and encoding on the given executor, a single
+     * thread executor gives the serial baseline
+     *
+     * @param context the application context
+     * @param backend the storage backend
+     * @param encoder the executor slicing and compressing the images
+     */
+    public JigsawServiceImpl(Context context, StorageBackend backend, ExecutorService encoder) {
+        this.dao = ImageDaoFactory.create(context, backend);
+        this.lazy = backend == StorageBackend.LAZY;
+        this.encoder = encoder;
     }
 
     @Override
     public Long create(Bitmap original, Difficulty level) {
-        return createImageTiles(original, level.getValue());
+        long start = SystemClock.elapsedRealtime();
+        ImageEntity entity = newOriginal(original);
+        Future<byte[]> encoded = encoder.submit(() -> BitmapUtil.bitmapToBytes(original));
+        List<ImageEntity> tiles = lazy ? null : sliceTiles(original, level.getValue());
+        entity.setEncoded(ThreadPools.await(encoded));
+        Log.d(TAG, "encoded " + level + " puzzle in " + (SystemClock.elapsedRealtime() - start) + "ms");
+
+        if (lazy) {
+            return dao.createWithGrid(entity, level.getValue());
+        }
+        return dao.createWithTiles(entity, tiles);
     }
 
     /**
-     * Slice original image into tiles then save in the db
+     * Slice original image into tiles and compress them on the encoder, the original and the tiles are then saved in
+     * the db in a single transaction
      *
      * @param original the original image to slice up
      * @param n how many slices to cut the image into
+     * @return the tiles in grid order
      */
-    private Long createImageTiles(Bitmap original, int n) {
-        Long originalId = saveOriginal(original);
-
-        int w = original.getWidth();
-        int h = original.getHeight();
-
-        int tileWidth = w / n;
-        int tileHeight = h / n;
-
-        for (int y = 0; y + tileHeight <= h; y += tileHeight) {
-            for (int x = 0; x + tileWidth <= w; x += tileWidth) {
-                Bitmap tile = Bitmap.createBitmap(original, x, y, tileWidth, tileHeight);
-                saveTile(tile, x, y, originalId);
+    private List<ImageEntity> sliceTiles(final Bitmap original, final int n) {
+        final int w = original.getWidth();
+        final int h = original.getHeight();
+
+        List<Callable<ImageEntity>> tasks = new ArrayList<>(n * n);
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                final int r = row;
+                final int c = col;
+                tasks.add(() -> newTile(original, tileRect(w, h, n, r, c), r, c));
             }
         }
 
-        return originalId;
+        return ThreadPools.invokeAll(encoder, tasks);
     }
 
     /**
-     * Save the original image with a random UUID
+     * Create the original image entity with a random UUID and its history thumbnail
      *
      * @param original image to save
      */
-    private Long saveOriginal(Bitmap original) {
+    private ImageEntity newOriginal(Bitmap original) {
         String name = UUID.randomUUID() + ".png";
         String desc = "original image " + name;
         Log.d(TAG, "image name: " + name);
 
-        return saveEntity(original, name, desc, null);
-    }
+        ImageEntity entity = new ImageEntity(original, name, desc, null);
+        entity.setThumbnail(BitmapUtil.createThumbnail(original, THUMBNAIL_SIZE));
 
-    /**
-     * Save created tile in the database
-     *
-     * @param tile the tile to save
-     * @param x the tile's x coordinate
-     * @param y the tile's y coordinate
-     */
-    private void saveTile(Bitmap tile, int x, int y, Long originalId) {
-        String name = "tile-" + x + "-" + y + ".png";
-        String desc = "sub image " + name;
-        Log.d(TAG, "image name: " + name);
-
-        saveEntity(tile, name, desc, originalId);
+        return entity;
     }
 
     /**
-     * Create an image entity with the give parameters and save
+     * Cut and compress the tile entity, the original id is set when the original is saved
      *
-     * @param image the bitmap image
-     * @param name the name
-     * @param desc the description
+     * @param original the original image
+     * @param r the tile bounds in the original
+     * @param row the tile's row in the grid
+     * @param col the tile's column in the grid
      */
-    private Long saveEntity(Bitmap image, String name, String desc, Long originalId) {
-        return dao.create(new ImageEntity(image, name, desc, originalId));
+    private ImageEntity newTile(Bitmap original, Rect r, int row, int col) {
+        Bitmap tile = Bitmap.createBitmap(original, r.left, r.top, r.width(), r.height());
+        ImageEntity entity = new ImageEntity(tile, null, row, col);
+        entity.setEncoded(BitmapUtil.bitmapToBytes(tile));
+
+        return entity;
     }
 }
@@ -19,22 +19,28 @@ package com.jigdraw.draw.tasks;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
+import android.util.Log;
 
 import com.jigdraw.draw.activity.JigsawActivity;
 import com.jigdraw.draw.model.LongParcelable;
 import com.jigdraw.draw.model.enums.Difficulty;
+import com.jigdraw.draw.model.enums.TaskPriority;
 import com.jigdraw.draw.service.JigsawService;
 import com.jigdraw.draw.service.impl.JigsawServiceImpl;
 
 /**
  * Class to generate jigsaw pieces and save the tiles in the sqlite database asynchronously returning the id of the
- * original image
+ * original image.  Runs as a background task so that loads submitted meanwhile start first.  It is scheduled for the
+ * application rather than the drawing screen, so a rotation or leaving the screen does not lose the drawing, and only
+ * holds the application context to open the puzzle once it is saved.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
 public class JigsawGenerator
-        extends AsyncTask<Bitmap, Integer, Long> {
+        extends ScheduledTask<Long> {
+
+    /** Class name for logging */
+    private static final String TAG = "JigsawGenerator";
 
     /** Jigsaw service */
     private JigsawService service;
@@ -45,15 +51,20 @@ public class JigsawGenerator
     /** Application context */
     private Context context;
 
-    public JigsawGenerator(Context context, Difficulty level) {
+    /** The drawing to cut into a jigsaw */
+    private Bitmap original;
+
+    public JigsawGenerator(Context context, Difficulty level, Bitmap original) {
+        super(TaskPriority.BACKGROUND);
         this.context = context;
         this.level = level;
+        this.original = original;
         this.service = new JigsawServiceImpl(context);
     }
 
     @Override
-    protected Long doInBackground(Bitmap... params) {
-        return service.create(params[0], level);
+    protected Long doInBackground() {
+        return service.create(original, level);
     }
 
     @Override
@@ -61,6 +72,11 @@ public class JigsawGenerator
         startJigsaw(id);
     }
 
+    @Override
+    protected void onFailed(Throwable error) {
+        Log.e(TAG, "failed to generate jigsaw", error);
+    }
+
     private void startJigsaw(long id) {
         Intent intent = new Intent(context, JigsawActivity.class).putExtra(
                 JigsawActivity.ORIGINAL_IMG_ID, new LongParcelable(id));
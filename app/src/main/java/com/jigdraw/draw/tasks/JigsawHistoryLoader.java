@@ -16,47 +16,69 @@
 
 package com.jigdraw.draw.tasks;
 
+import static com.jigdraw.draw.util.Constants.HISTORY_PAGE_SIZE;
+
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.os.AsyncTask;
-import android.widget.ListView;
+import android.util.Log;
 
 import com.jigdraw.draw.adapter.JigsawListAdapter;
-import com.jigdraw.draw.dao.ImageDao;
-import com.jigdraw.draw.dao.impl.ImageDaoImpl;
+import com.jigdraw.draw.dao.AsyncImageDao;
+import com.jigdraw.draw.dao.ImageDaoFactory;
 import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.model.enums.TaskPriority;
+import com.jigdraw.draw.util.ThreadPools;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Async task to load a user's drawing history to show in the history list
+ * Async task to load one page of a user's drawing history to show in the history list.  The page is queried on the
+ * io pool, cancelling the task cancels the query.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
 public class JigsawHistoryLoader
-        extends AsyncTask<Bitmap, Integer, List<Bitmap>> {
+        extends ScheduledTask<List<ImageEntity>> {
+
+    /** Class name for logging */
+    private static final String TAG = "JigsawHistoryLoader";
+
+    private AsyncImageDao dao;
+    private JigsawListAdapter adapter;
+    private int page;
+    private Long beforeId;
 
-    private ImageDao dao;
-    private Context context;
-    private ListView listView;
+    /**
+     * Create new history page loader
+     *
+     * @param context the application context
+     * @param adapter the adapter to hand the page to
+     * @param page the index of the page
+     * @param beforeId the page holds the images older than this id, null for the first page
+     */
+    public JigsawHistoryLoader(Context context, JigsawListAdapter adapter, int page, Long beforeId) {
+        super(TaskPriority.INTERACTIVE);
+        this.adapter = adapter;
+        this.page = page;
+        this.beforeId = beforeId;
+        this.dao = ImageDaoFactory.createAsync(context);
+    }
+
+    @Override
+    protected List<ImageEntity> doInBackground() {
+        List<ImageEntity> entities = ThreadPools.await(dao.getHistoryPage(beforeId, HISTORY_PAGE_SIZE));
+        // thumbnails are decoded here so the adapter never decodes on the main thread
+        entities.forEach(ImageEntity::getThumbnail);
 
-    public JigsawHistoryLoader(Context context, ListView listView) {
-        this.context = context;
-        this.listView = listView;
-        this.dao = new ImageDaoImpl(context);
+        return entities;
     }
 
     @Override
-    protected List<Bitmap> doInBackground(Bitmap... params) {
-        List<ImageEntity> data = dao.getHistory();
-        return data.stream().map(ImageEntity::getImage).collect(Collectors.toList());
+    protected void onPostExecute(List<ImageEntity> entities) {
+        adapter.onPageLoaded(page, entities);
     }
 
     @Override
-    protected void onPostExecute(List<Bitmap> tiles) {
-        JigsawListAdapter adapter = new JigsawListAdapter(context, tiles,
-                tiles.size());
-        listView.setAdapter(adapter);
+    protected void onFailed(Throwable error) {
+        Log.e(TAG, "failed to load history page " + page, error);
     }
 }
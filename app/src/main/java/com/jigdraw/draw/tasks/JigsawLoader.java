@@ -18,54 +18,155 @@ package com.jigdraw.draw.tasks;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
+import android.util.Log;
+import android.view.View;
 import android.widget.GridView;
 
+import com.jigdraw.draw.adapter.JigsawBoardAdapter;
 import com.jigdraw.draw.adapter.JigsawGridAdapter;
-import com.jigdraw.draw.dao.ImageDao;
-import com.jigdraw.draw.dao.impl.ImageDaoImpl;
-import com.jigdraw.draw.model.ImageEntity;
+import com.jigdraw.draw.cache.BitmapMemoryBudget;
+import com.jigdraw.draw.cache.BitmapPool;
+import com.jigdraw.draw.cache.TileCache;
+import com.jigdraw.draw.dao.AsyncImageDao;
+import com.jigdraw.draw.dao.ImageDaoFactory;
+import com.jigdraw.draw.model.enums.EvictionPriority;
+import com.jigdraw.draw.model.enums.TaskPriority;
+import com.jigdraw.draw.util.ThreadPools;
+import com.jigdraw.draw.views.JigsawBoardView;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class to load jigsaw pieces from the sqlite database asynchronously returning a list of {@link
- * com.jigdraw.draw.model.ImageEntity} objects that were created from an original image with id
+ * com.jigdraw.draw.model.ImageEntity} objects that were created from an original image with id.  The tiles are read
+ * through the {@link AsyncImageDao} on the io pool, cancelling the task cancels the read, which interrupts the tile
+ * decoding and leaves the board alone.  The tiles decoded so far and then the board adapter are
+ * accounted for in the {@link BitmapMemoryBudget} on behalf of the board's screen.  The loader holds the tiles in
+ * the {@link BitmapPool} until it hands them to the board adapter.  Tiles are decoded down to the width of a grid cell,
+ * the width of the board less the spacing between the columns split by the number of columns.  The board is measured
+ * on the main thread by the screen scheduling the loader.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
-public class JigsawLoader extends AsyncTask<Long, Integer, List<Bitmap>> {
-    /** Image dao */
-    private ImageDao dao;
+public class JigsawLoader
+        extends ScheduledTask<List<Bitmap>>
+        implements BitmapMemoryBudget.Owner {
+    /** Class name for logging */
+    private static final String TAG = "JigsawLoader";
 
-    /** The grid view */
-    private GridView gridView;
+    /** Image dao, the tiles are read on the io pool */
+    private AsyncImageDao dao;
+
+    /** The board, a grid view or a recycler board view */
+    private View board;
 
     /** The application context */
     private Context context;
 
-    public JigsawLoader(Context context, GridView gridView) {
+    /** The original image id */
+    private Long id;
+
+    /** Width of the board in pixels, less its padding */
+    private int boardWidth;
+
+    /** Spacing between the columns of the board in pixels */
+    private int columnSpacing;
+
+    /** Width of a grid cell in pixels, the tiles are decoded to it */
+    private int cellWidth;
+
+    /** Bytes of the tiles decoded so far */
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    /**
+     * Create new tiles loader
+     *
+     * @param context the application context
+     * @param board the board showing the tiles, a {@link GridView} or a {@link JigsawBoardView}
+     * @param id the original image id
+     * @param boardWidth the width of the board less its padding, measured on the main thread
+     * @param columnSpacing the spacing between the columns of the board
+     */
+    public JigsawLoader(Context context, View board, Long id, int boardWidth, int columnSpacing) {
+        super(TaskPriority.INTERACTIVE);
+        if (!(board instanceof GridView || board instanceof JigsawBoardView)) {
+            throw new IllegalArgumentException("unsupported board " + board);
+        }
         this.context = context;
-        this.gridView = gridView;
-        this.dao = new ImageDaoImpl(context);
+        this.board = board;
+        this.id = id;
+        this.boardWidth = boardWidth;
+        this.columnSpacing = columnSpacing;
+        this.dao = ImageDaoFactory.createAsync(context);
     }
 
     @Override
-    protected List<Bitmap> doInBackground(Long... params) {
-        List<ImageEntity> entities = dao.findTiles(params[0]);
-        Collections.shuffle(entities);
+    protected List<Bitmap> doInBackground() {
+        int grid = ThreadPools.await(dao.findGridSize(id));
+        cellWidth = grid > 0 ? (boardWidth - columnSpacing * (grid - 1)) / grid : boardWidth;
 
-        return entities.stream().map(ImageEntity::getImage).collect(Collectors.toList());
+        TileCache cache = TileCache.getInstance();
+        List<Bitmap> cached = cache.acquire(id, cellWidth);
+        List<Bitmap> tiles;
+        if (cached != null) {
+            tiles = new ArrayList<>(cached);
+        } else {
+            tiles = new ArrayList<>();
+            BitmapMemoryBudget budget = BitmapMemoryBudget.getInstance();
+            budget.register(board.getContext(), TAG, this, EvictionPriority.PINNED);
+            try {
+                ThreadPools.await(dao.streamTiles(id, cellWidth, Integer.MAX_VALUE, tile -> {
+                    Bitmap image = tile.getImage();
+                    decodedBytes.addAndGet(image == null ? 0 : image.getAllocationByteCount());
+                    tiles.add(image);
+                }));
+            } finally {
+                budget.unregister(this);
+            }
+            BitmapPool.getInstance().acquire(tiles);
+            cache.put(id, cellWidth, tiles);
+        }
+        cache.logStats();
+        BitmapPool.getInstance().logStats();
+        Collections.shuffle(tiles);
+
+        return tiles;
     }
 
     @Override
     protected void onPostExecute(List<Bitmap> tiles) {
         int pieces = (int) Math.sqrt(tiles.size());
-        JigsawGridAdapter adapter = new JigsawGridAdapter(context, tiles, pieces);
+        BitmapMemoryBudget.Owner adapter;
+        if (board instanceof JigsawBoardView) {
+            JigsawBoardAdapter boardAdapter = new JigsawBoardAdapter(context, tiles, pieces, cellWidth);
+            ((JigsawBoardView) board).setAdapter(boardAdapter);
+            adapter = boardAdapter;
+        } else {
+            JigsawGridAdapter gridAdapter = new JigsawGridAdapter(context, tiles, pieces, cellWidth);
+            ((GridView) board).setAdapter(gridAdapter);
+            ((GridView) board).setNumColumns(pieces);
+            adapter = gridAdapter;
+        }
+        BitmapMemoryBudget.getInstance().register(board.getContext(), adapter.getClass().getSimpleName(), adapter,
+                EvictionPriority.PINNED);
+        BitmapPool.getInstance().release(tiles);
+    }
 
-        gridView.setAdapter(adapter);
-        gridView.setNumColumns(pieces);
+    @Override
+    public long getByteCount() {
+        return decodedBytes.get();
+    }
+
+    @Override
+    public void release() {
+        // the tiles are handed to the grid once decoded
+    }
+
+    @Override
+    protected void onFailed(Throwable error) {
+        Log.e(TAG, "failed to load jigsaw tiles", error);
     }
 }
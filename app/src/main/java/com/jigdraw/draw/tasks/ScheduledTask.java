@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.tasks;
+
+import com.jigdraw.draw.model.enums.TaskPriority;
+
+/**
+ * Task run by the {@link TaskScheduler}.  The work runs on a scheduler thread and the result is handed back on the main
+ * thread, unless the task was cancelled in the meantime.  Work that checks {@link #isCancelled()} or is interruptible
+ * stops early when cancelled.
+ *
+ * @param <R> the result type
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public abstract class ScheduledTask<R> {
+
+    /** Priority in the scheduler queue */
+    private final TaskPriority priority;
+
+    /** Set when the owner of the task cancels it */
+    private volatile boolean cancelled;
+
+    protected ScheduledTask(TaskPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Do the work on a scheduler thread
+     *
+     * @return the result
+     * @throws Exception if the work fails
+     */
+    protected abstract R doInBackground() throws Exception;
+
+    /**
+     * Called on the main thread with the result, never called once the task is cancelled
+     *
+     * @param result the result
+     */
+    protected void onPostExecute(R result) {
+    }
+
+    /**
+     * Called on the main thread if the work failed
+     *
+     * @param error the failure
+     */
+    protected abstract void onFailed(Throwable error);
+
+    public TaskPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.tasks;
+
+import android.util.Log;
+
+import com.jigdraw.draw.util.ThreadPools;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the {@link ScheduledTask}s of the screens on a few threads.  Waiting tasks start in priority order, then in the
+ * order they were submitted, so a history or puzzle load does not wait behind a queued puzzle generation.  Every task
+ * belongs to an owner, usually the screen it updates, and {@link #cancelAll(Object)} cancels all the tasks of an owner
+ * when it goes away: waiting tasks are dropped, running ones are interrupted and no result is handed back.  Tasks that
+ * must outlive a screen, like a puzzle generation, are owned by the application, which is never cancelled.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class TaskScheduler {
+
+    /** Class name for logging */
+    private static final String TAG = "TaskScheduler";
+
+    /** Number of tasks running at the same time */
+    public static final int THREADS = 2;
+
+    /** Runs the tasks in priority order */
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(), ThreadPools.threadFactory("jigsaw-task"));
+
+    /** Tasks not finished yet by owner */
+    private final Map<Object, Set<Job<?>>> jobs = new HashMap<>();
+
+    /** Submission order, to keep tasks of the same priority first in first out */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private TaskScheduler() {}
+
+    /**
+     * Get the process wide scheduler
+     *
+     * @return the scheduler
+     */
+    public static TaskScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Submit a task on behalf of an owner
+     *
+     * @param owner the owner cancelling the task when it goes away
+     * @param task the task
+     * @param <R> the result type
+     */
+    public <R> void submit(Object owner, ScheduledTask<R> task) {
+        Job<R> job = new Job<>(owner, task, sequence.getAndIncrement());
+        synchronized (jobs) {
+            jobs.computeIfAbsent(owner, k -> new HashSet<>()).add(job);
+        }
+        executor.execute(job);
+    }
+
+    /**
+     * Cancel all the unfinished tasks of an owner
+     *
+     * @param owner the owner
+     */
+    public void cancelAll(Object owner) {
+        Set<Job<?>> owned;
+        synchronized (jobs) {
+            owned = jobs.remove(owner);
+        }
+        if (owned == null) {
+            return;
+        }
+        for (Job<?> job : owned) {
+            job.task.cancel();
+            job.cancel(true);
+            executor.remove(job);
+        }
+        Log.d(TAG, "cancelled " + owned.size() + " tasks of " + owner);
+    }
+
+    private void finished(Job<?> job) {
+        synchronized (jobs) {
+            Set<Job<?>> owned = jobs.get(job.owner);
+            if (owned != null && owned.remove(job) && owned.isEmpty()) {
+                jobs.remove(job.owner);
+            }
+        }
+    }
+
+    /**
+     * A submitted task, ordered by priority then submission
+     */
+    private final class Job<R>
+            extends FutureTask<R>
+            implements Comparable<Job<?>> {
+        private final Object owner;
+        private final ScheduledTask<R> task;
+        private final long seq;
+
+        Job(Object owner, ScheduledTask<R> task, long seq) {
+            super(task::doInBackground);
+            this.owner = owner;
+            this.task = task;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            int byPriority = task.getPriority().compareTo(other.task.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+
+        @Override
+        protected void done() {
+            finished(this);
+            if (!isCancelled()) {
+                ThreadPools.mainThread().execute(this::deliver);
+            }
+        }
+
+        /**
+         * Hand the result back on the main thread, the owner may have cancelled the task since it finished
+         */
+        private void deliver() {
+            if (task.isCancelled()) {
+                return;
+            }
+            try {
+                task.onPostExecute(get());
+            } catch (ExecutionException e) {
+                task.onFailed(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Holder so the scheduler is only created when first used */
+    private static final class Holder {
+        private static final TaskScheduler INSTANCE = new TaskScheduler();
+    }
+}
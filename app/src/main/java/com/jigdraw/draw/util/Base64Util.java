@@ -16,12 +16,12 @@
 
 package com.jigdraw.draw.util;
 
+import static com.jigdraw.draw.util.BitmapUtil.bitmapToBytes;
+import static com.jigdraw.draw.util.BitmapUtil.bytesToBitmap;
+
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Base64;
 
-import java.io.ByteArrayOutputStream;
-
 /**
  * Utilities class for converting image from base 64 to bitmap and bitmap to base 64
  *
@@ -38,10 +38,7 @@ public final class Base64Util {
      * @return base64 string
      */
     public static String bitMapToBase64(Bitmap bitmap) {
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100, os);
-        byte[] byteArray = os.toByteArray();
-        return Base64.encodeToString(byteArray, 0);
+        return Base64.encodeToString(bitmapToBytes(bitmap), 0);
     }
 
     /**
@@ -51,8 +48,6 @@ public final class Base64Util {
      * @return bitmap image
      */
     public static Bitmap base64ToBitmap(String base64String) {
-        byte[] decodedString = Base64.decode(base64String, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(decodedString, 0,
-                decodedString.length);
+        return bytesToBitmap(Base64.decode(base64String, Base64.DEFAULT));
     }
 }
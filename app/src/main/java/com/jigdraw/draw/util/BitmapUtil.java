@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Utilities class for converting a bitmap to its compressed PNG bytes and back
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class BitmapUtil {
+
+    /** Class name for logging */
+    private static final String TAG = "BitmapUtil";
+
+    private BitmapUtil() {}
+
+    /**
+     * Compress bitmap to PNG bytes
+     *
+     * @param bitmap the bitmap to compress
+     * @return the PNG bytes
+     */
+    public static byte[] bitmapToBytes(Bitmap bitmap) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, os);
+        return os.toByteArray();
+    }
+
+    /**
+     * Decode compressed bytes to bitmap
+     *
+     * @param bytes the bytes to decode
+     * @return bitmap image
+     */
+    public static Bitmap bytesToBitmap(byte[] bytes) {
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode a stream of compressed bytes to bitmap, the stream is closed
+     *
+     * @param in the stream to decode
+     * @return bitmap image or null if the stream could not be decoded
+     */
+    public static Bitmap streamToBitmap(InputStream in) {
+        return streamToBitmap(in, null);
+    }
+
+    /**
+     * Decode a stream of compressed bytes to bitmap with decoding options, the stream is closed
+     *
+     * @param in the stream to decode
+     * @param options the decoding options, may be null
+     * @return bitmap image or null if the stream could not be decoded or only the bounds were decoded
+     */
+    public static Bitmap streamToBitmap(InputStream in, BitmapFactory.Options options) {
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Log.w(TAG, "failed to close image stream", e);
+            }
+        }
+    }
+
+    /**
+     * Compute the largest power of two subsampling that keeps the decoded image at least the requested size, so that
+     * the image is never decoded smaller than shown
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param reqWidth the requested width
+     * @param reqHeight the requested height
+     * @return the sample size for {@link BitmapFactory.Options#inSampleSize}
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Scale bitmap down so that its largest side is at most the given size, keeping the aspect ratio
+     *
+     * @param bitmap the bitmap to scale
+     * @param maxSize the largest side of the thumbnail in pixels
+     * @return the thumbnail, or the bitmap itself if it is already small enough
+     */
+    public static Bitmap createThumbnail(Bitmap bitmap, int maxSize) {
+        int w = bitmap.getWidth();
+        int h = bitmap.getHeight();
+        if (w <= maxSize && h <= maxSize) {
+            return bitmap;
+        }
+        float scale = (float) maxSize / Math.max(w, h);
+        return Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(w * scale)),
+                Math.max(1, Math.round(h * scale)), true);
+    }
+}
@@ -4,6 +4,14 @@ public class Constants {
     public static final int INVALID_ID = -1;
     public static final int MOVE_DURATION = 300;
     public static final int SMOOTH_SCROLL_AMOUNT_AT_EDGE = 8;
+    public static final int THUMBNAIL_SIZE = 256;
+    public static final int HISTORY_PAGE_SIZE = 20;
+    public static final int HISTORY_RESIDENT_PAGES = 3;
+    public static final int HISTORY_PREFETCH_DISTANCE = 5;
+    public static final String PREFERENCES_NAME = "jigsaw_preferences";
+    public static final String STORAGE_BACKEND_KEY = "storage_backend";
+    public static final String PACK_DIRECTORY = "packs";
+    public static final String BOARD_TYPE_KEY = "board_type";
     
     private Constants(){}
 }
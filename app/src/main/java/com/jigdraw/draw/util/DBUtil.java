@@ -23,25 +23,124 @@ package com.jigdraw.draw.util;
  */
 public final class DBUtil {
 
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 7;
     public static final String DATABASE_NAME = "jigsaw.db";
     public static final String JIGSAW_TABLE = "jigsaw_images";
     public static final String NAME_COLUMN = "name";
     public static final String ID_COLUMN = "id";
     public static final String IMAGE_COLUMN = "img";
     public static final String DESC_COLUMN = "desc";
+    public static final String THUMBNAIL_COLUMN = "thumb";
     public static final String ORIGINAL_COLUMN = "original";
-    
+    public static final String PUZZLES_TABLE = "puzzles";
+    public static final String TILES_TABLE = "tiles";
+    public static final String PUZZLE_COLUMN = "puzzle_id";
+    public static final String ROW_COLUMN = "grid_row";
+    public static final String COL_COLUMN = "grid_col";
+    public static final String TILES_PUZZLE_INDEX = "tiles_puzzle_index";
+    public static final String CHUNKS_COLUMN = "chunks";
+    public static final String PUZZLE_CHUNKS_TABLE = "puzzle_chunks";
+    public static final String TILE_CHUNKS_TABLE = "tile_chunks";
+    public static final String OWNER_COLUMN = "owner_id";
+    public static final String SEQ_COLUMN = "seq";
+    public static final String DATA_COLUMN = "data";
+    public static final String PACK_COLUMN = "pack";
+    public static final String GRID_COLUMN = "grid";
+
+    /** version 1 table kept aside while its rows are converted */
+    public static final String JIGSAW_TABLE_V1 = JIGSAW_TABLE + "_v1";
+
+    /** number of rows converted per query during a migration */
+    public static final int MIGRATION_BATCH_SIZE = 16;
+
+    /**
+     * images larger than this are split into chunk rows, well under the 2 MB cursor window so that a row always fits
+     * in one window with room to spare
+     */
+    public static final int CHUNK_THRESHOLD = 1024 * 1024;
+
+    /** size of one chunk row */
+    public static final int CHUNK_SIZE = 512 * 1024;
+
     private DBUtil() {}
 
-    /** create jigsaw_images table */
+    /** create puzzles table holding the original images */
+    public static final String CREATE_PUZZLES_TABLE = "create table if not"
+            + " exists " + PUZZLES_TABLE + " ("
+            + ID_COLUMN + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + NAME_COLUMN + " TEXT,"
+            + IMAGE_COLUMN + " BLOB," + DESC_COLUMN + " TEXT,"
+            + THUMBNAIL_COLUMN + " BLOB,"
+            + CHUNKS_COLUMN + " INTEGER NOT NULL DEFAULT 0,"
+            + PACK_COLUMN + " TEXT,"
+            + GRID_COLUMN + " INTEGER);";
+
+    /** create tiles table, tiles go away with their puzzle */
+    public static final String CREATE_TILES_TABLE = "create table if not"
+            + " exists " + TILES_TABLE + " ("
+            + ID_COLUMN + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + PUZZLE_COLUMN + " INTEGER NOT NULL REFERENCES " + PUZZLES_TABLE
+            + "(" + ID_COLUMN + ") ON DELETE CASCADE,"
+            + ROW_COLUMN + " INTEGER NOT NULL," + COL_COLUMN + " INTEGER NOT NULL,"
+            + IMAGE_COLUMN + " BLOB,"
+            + CHUNKS_COLUMN + " INTEGER NOT NULL DEFAULT 0);";
+
+    /** create chunks table for the puzzle images too large for one row */
+    public static final String CREATE_PUZZLE_CHUNKS_TABLE = createChunksTable(PUZZLE_CHUNKS_TABLE, PUZZLES_TABLE);
+
+    /** create chunks table for the tile images too large for one row */
+    public static final String CREATE_TILE_CHUNKS_TABLE = createChunksTable(TILE_CHUNKS_TABLE, TILES_TABLE);
+
+    /**
+     * index for finding the tiles of a puzzle in grid order, also used by the cascading delete.  The tile id is the
+     * rowid so it is carried by the index too.
+     */
+    public static final String CREATE_TILES_PUZZLE_INDEX = "create unique index"
+            + " if not exists " + TILES_PUZZLE_INDEX + " on " + TILES_TABLE
+            + " (" + PUZZLE_COLUMN + ", " + ROW_COLUMN + ", " + COL_COLUMN + ");";
+
+    /** insert a puzzle, column order follows {@link #PUZZLE_COLUMNS} then the thumbnail */
+    public static final String INSERT_PUZZLE_ROW = "insert into "
+            + PUZZLES_TABLE + " (" + ID_COLUMN + ", " + NAME_COLUMN + ", "
+            + IMAGE_COLUMN + ", " + DESC_COLUMN + ", " + THUMBNAIL_COLUMN
+            + ", " + CHUNKS_COLUMN + ") values (?, ?, ?, ?, ?, ?)";
+
+    /** insert a tile, column order follows {@link #TILE_COLUMNS} */
+    public static final String INSERT_TILE_ROW = "insert into "
+            + TILES_TABLE + " (" + ID_COLUMN + ", " + PUZZLE_COLUMN + ", "
+            + ROW_COLUMN + ", " + COL_COLUMN + ", " + IMAGE_COLUMN
+            + ", " + CHUNKS_COLUMN + ") values (?, ?, ?, ?, ?, ?)";
+
+    /** insert a chunk into either chunks table, the table name is filled in with {@link String#format} */
+    public static final String INSERT_CHUNK_ROW = "insert into %s ("
+            + OWNER_COLUMN + ", " + SEQ_COLUMN + ", " + DATA_COLUMN
+            + ") values (?, ?, ?)";
+
+    /** create version 2 jigsaw_images table */
     public static final String CREATE_JIGSAW_TABLE = "create table if not"
             + " exists " + JIGSAW_TABLE + " ("
             + ID_COLUMN + " INTEGER PRIMARY KEY AUTOINCREMENT,"
             + NAME_COLUMN + " TEXT,"
-            + IMAGE_COLUMN + " TEXT," + DESC_COLUMN + " TEXT,"
+            + IMAGE_COLUMN + " BLOB," + DESC_COLUMN + " TEXT,"
             + ORIGINAL_COLUMN + " INTEGER);";
 
+    /**
+     * insert a row, column order follows {@link #ALL_COLUMNS}.  Binding a null id lets sqlite generate it, binding
+     * an id keeps it.
+     */
+    public static final String INSERT_JIGSAW_ROW = "insert into "
+            + JIGSAW_TABLE + " (" + ID_COLUMN + ", " + NAME_COLUMN + ", "
+            + IMAGE_COLUMN + ", " + DESC_COLUMN + ", " + ORIGINAL_COLUMN
+            + ") values (?, ?, ?, ?, ?)";
+
+    /** move the version 1 table aside */
+    public static final String RENAME_JIGSAW_TABLE_V1 = "alter table "
+            + JIGSAW_TABLE + " rename to " + JIGSAW_TABLE_V1;
+
+    /** drop the version 1 table once converted */
+    public static final String DROP_JIGSAW_TABLE_V1 = "drop table if exists "
+            + JIGSAW_TABLE_V1;
+
     /** drop jigsaw_images table */
     public static final String DROP_JIGSAW_TABLE = "drop table if exists " +
             JIGSAW_TABLE;
@@ -49,16 +148,70 @@ public final class DBUtil {
     /** for querying like in prepared statements */
     public static final String ID_SELECTION = "id = ?";
 
+    /** rows after the given id, used to walk a table in batches */
+    public static final String ID_AFTER_SELECTION = "id > ?";
+
+    /** rows before the given id, used to page through history newest first */
+    public static final String ID_BEFORE_SELECTION = "id < ?";
+
+    /** newest rows first */
+    public static final String NEWEST_FIRST = ID_COLUMN + " desc";
+
+    /** tiles of a puzzle selection */
+    public static final String PUZZLE_SELECTION = PUZZLE_COLUMN + " = ?";
+
+    /** tiles in grid order */
+    public static final String TILE_ORDER = ROW_COLUMN + ", " + COL_COLUMN;
+
+    /** chunks of an image selection */
+    public static final String OWNER_SELECTION = OWNER_COLUMN + " = ?";
+
+    /** one chunk of an image selection */
+    public static final String CHUNK_SELECTION = OWNER_COLUMN + " = ? and " + SEQ_COLUMN + " = ?";
+
     /** original image selection */
     public static final String ORIGINAL_SELECTION = "original = ?";
 
     /** original image selection is null */
     public static final String ORIGINAL_SELECTION_NULL = "original is null";
 
-    /** all columns selection */
+    /** puzzle columns selection */
+    public final static String[] PUZZLE_COLUMNS = new String[]{ID_COLUMN, NAME_COLUMN,
+            IMAGE_COLUMN, DESC_COLUMN, CHUNKS_COLUMN};
+
+    /** history selection, never reads the full size image */
+    public final static String[] HISTORY_COLUMNS = new String[]{ID_COLUMN, NAME_COLUMN,
+            DESC_COLUMN, THUMBNAIL_COLUMN};
+
+    /** tile columns selection */
+    public final static String[] TILE_COLUMNS = new String[]{ID_COLUMN, PUZZLE_COLUMN,
+            ROW_COLUMN, COL_COLUMN, IMAGE_COLUMN, CHUNKS_COLUMN};
+
+    /** original image and grid size selection, to cut the tiles from */
+    public final static String[] GRID_COLUMNS = new String[]{ID_COLUMN, IMAGE_COLUMN, CHUNKS_COLUMN, GRID_COLUMN};
+
+    /** grid size selection */
+    public final static String[] GRID_SIZE_COLUMNS = new String[]{GRID_COLUMN};
+
+    /** tile pack selection */
+    public final static String[] PACK_COLUMNS = new String[]{PACK_COLUMN};
+
+    /** chunk data selection */
+    public final static String[] CHUNK_COLUMNS = new String[]{DATA_COLUMN};
+
+    /** version 2 jigsaw_images columns selection */
     public final static String[] ALL_COLUMNS = new String[]{ID_COLUMN, NAME_COLUMN,
             IMAGE_COLUMN, DESC_COLUMN, ORIGINAL_COLUMN};
 
+    /** chunks go away with the image they belong to, the primary key keeps them in order */
+    private static String createChunksTable(String table, String ownerTable) {
+        return "create table if not exists " + table + " ("
+                + OWNER_COLUMN + " INTEGER NOT NULL REFERENCES " + ownerTable
+                + "(" + ID_COLUMN + ") ON DELETE CASCADE,"
+                + SEQ_COLUMN + " INTEGER NOT NULL," + DATA_COLUMN + " BLOB NOT NULL,"
+                + "PRIMARY KEY (" + OWNER_COLUMN + ", " + SEQ_COLUMN + "));";
+    }
+
     /** arguments to set for the prepared statements */
     public static String[] getIdArguments(final Long id) {
         return new String[]{String.valueOf(id)};
@@ -16,18 +16,25 @@
 
 package com.jigdraw.draw.util;
 
-import static com.jigdraw.draw.util.Base64Util.bitMapToBase64;
+import static com.jigdraw.draw.util.BitmapUtil.bitmapToBytes;
+import static com.jigdraw.draw.util.DBUtil.CHUNKS_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.COL_COLUMN;
 import static com.jigdraw.draw.util.DBUtil.DESC_COLUMN;
 import static com.jigdraw.draw.util.DBUtil.IMAGE_COLUMN;
 import static com.jigdraw.draw.util.DBUtil.NAME_COLUMN;
-import static com.jigdraw.draw.util.DBUtil.ORIGINAL_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.PUZZLE_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.ROW_COLUMN;
+import static com.jigdraw.draw.util.DBUtil.THUMBNAIL_COLUMN;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
 
 import com.jigdraw.draw.model.ImageEntity;
 
 /**
- * Utilities class to convert from {@link ImageEntity} to {@link ContentValues} for database persistence.
+ * Utilities class to convert from {@link ImageEntity} to {@link ContentValues} or {@link SQLiteStatement} bindings for
+ * database persistence.  The image is passed in already compressed, with a null image and a chunk count when it is
+ * stored in chunk rows instead.
  *
  * @author Jay Paulynice (jay.paulynice@gmail.com)
  */
@@ -36,18 +43,104 @@ public final class EntityUtil {
     private EntityUtil() {}
 
     /**
-     * Convert the given image entity to content values
+     * Convert the given original image entity to puzzle content values
      *
      * @param entity the entity to convert
+     * @param image the compressed image or null if chunked
+     * @param chunks the number of chunk rows of the image
      * @return content values object
      */
-    public static ContentValues entityToContentValues(ImageEntity entity) {
+    public static ContentValues puzzleToContentValues(ImageEntity entity, byte[] image, int chunks) {
         ContentValues cv = new ContentValues();
         cv.put(NAME_COLUMN, entity.getName());
-        cv.put(IMAGE_COLUMN, bitMapToBase64(entity.getImage()));
+        cv.put(IMAGE_COLUMN, image);
         cv.put(DESC_COLUMN, entity.getDesc());
-        cv.put(ORIGINAL_COLUMN, entity.getOriginalId());
+        cv.put(CHUNKS_COLUMN, chunks);
+        if (entity.getThumbnail() != null) {
+            cv.put(THUMBNAIL_COLUMN, bitmapToBytes(entity.getThumbnail()));
+        }
 
         return cv;
     }
+
+    /**
+     * Convert the given tile entity to tile content values
+     *
+     * @param entity the entity to convert
+     * @param image the compressed image or null if chunked
+     * @param chunks the number of chunk rows of the image
+     * @return content values object
+     */
+    public static ContentValues tileToContentValues(ImageEntity entity, byte[] image, int chunks) {
+        ContentValues cv = new ContentValues();
+        cv.put(PUZZLE_COLUMN, entity.getOriginalId());
+        cv.put(ROW_COLUMN, entity.getRow());
+        cv.put(COL_COLUMN, entity.getCol());
+        cv.put(IMAGE_COLUMN, image);
+        cv.put(CHUNKS_COLUMN, chunks);
+
+        return cv;
+    }
+
+    /**
+     * Bind the given original image entity to a compiled {@link DBUtil#INSERT_PUZZLE_ROW} statement.  The id is left
+     * null so it gets generated on insert.
+     *
+     * @param statement the compiled insert statement
+     * @param entity the entity to bind
+     * @param image the compressed image or null if chunked
+     * @param chunks the number of chunk rows of the image
+     */
+    public static void bindPuzzle(SQLiteStatement statement, ImageEntity entity, byte[] image, int chunks) {
+        statement.clearBindings();
+        bindString(statement, 2, entity.getName());
+        bindBlob(statement, 3, image);
+        bindString(statement, 4, entity.getDesc());
+        if (entity.getThumbnail() != null) {
+            statement.bindBlob(5, bitmapToBytes(entity.getThumbnail()));
+        }
+        statement.bindLong(6, chunks);
+    }
+
+    /**
+     * Bind the given tile entity to a compiled {@link DBUtil#INSERT_TILE_ROW} statement.  The id is left null so it
+     * gets generated on insert.
+     *
+     * @param statement the compiled insert statement
+     * @param entity the entity to bind
+     * @param puzzleId the id of the puzzle the tile belongs to
+     * @param image the compressed image or null if chunked
+     * @param chunks the number of chunk rows of the image
+     */
+    public static void bindTile(SQLiteStatement statement, ImageEntity entity, long puzzleId, byte[] image,
+                                int chunks) {
+        statement.clearBindings();
+        statement.bindLong(2, puzzleId);
+        statement.bindLong(3, entity.getRow());
+        statement.bindLong(4, entity.getCol());
+        bindBlob(statement, 5, image);
+        statement.bindLong(6, chunks);
+    }
+
+    /**
+     * Get the compressed image of the entity, encoding it unless it was encoded ahead of time
+     *
+     * @param entity the entity
+     * @return the compressed image bytes
+     */
+    public static byte[] encodeImage(ImageEntity entity) {
+        return entity.getEncoded() != null ? entity.getEncoded() : bitmapToBytes(entity.getImage());
+    }
+
+    private static void bindBlob(SQLiteStatement statement, int index, byte[] value) {
+        if (value != null) {
+            statement.bindBlob(index, value);
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.util;
+
+/**
+ * Geometry of the visible cells of a grid, used to find the cell a dragged tile switches with straight from the
+ * position of the hover cell center instead of testing every neighbor view.  Cells are laid out in rows from the first
+ * visible position, each cell at a fixed stride from the previous one.
+ * <p>
+ * The switch rule is the one the grid view applied neighbor by neighbor: a neighbor is a candidate once the center
+ * has passed its near edge, by an extra overlap for the neighbors in the same row or column, and of all the candidates
+ * the one at the highest position wins.  The candidates form at most three rectangles of cells, one diagonal and two
+ * straight, so the winner is found in constant time whatever the number of cells.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class GridGeometry {
+    private int columns = 1;
+    private int firstPosition;
+    private int lastPosition = -1;
+    private int originLeft;
+    private int originTop;
+    private int cellWidth;
+    private int cellHeight;
+    private int strideX = 1;
+    private int strideY = 1;
+
+    /**
+     * Set the visible range of the grid
+     *
+     * @param columns the number of columns
+     * @param firstPosition the first visible position, at the start of a row
+     * @param lastPosition the last visible position
+     */
+    public void setRange(int columns, int firstPosition, int lastPosition) {
+        this.columns = Math.max(1, columns);
+        this.firstPosition = firstPosition;
+        this.lastPosition = lastPosition;
+    }
+
+    /**
+     * Set the cell layout of the grid
+     *
+     * @param originLeft the left of the cell at the first visible position
+     * @param originTop the top of the cell at the first visible position
+     * @param cellWidth the cell width
+     * @param cellHeight the cell height
+     * @param strideX the distance between the lefts of two cells next to each other in a row
+     * @param strideY the distance between the tops of two cells next to each other in a column
+     */
+    public void setCells(int originLeft, int originTop, int cellWidth, int cellHeight, int strideX, int strideY) {
+        this.originLeft = originLeft;
+        this.originTop = originTop;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.strideX = Math.max(1, strideX);
+        this.strideY = Math.max(1, strideY);
+    }
+
+    /**
+     * Find the position a dragged cell switches with
+     *
+     * @param position the position of the dragged cell
+     * @param centerX the x of the hover cell center
+     * @param centerY the y of the hover cell center
+     * @param overlap how far past the near edge of a cell in the same row or column the center has to go
+     * @return the target position or -1 if there is none
+     */
+    public int switchTarget(int position, int centerX, int centerY, int overlap) {
+        int firstRow = firstPosition / columns;
+        int lastRow = lastPosition / columns;
+        int row = position / columns;
+        int col = position % columns;
+        int left = originLeft + col * strideX;
+        int top = originTop + (row - firstRow) * strideY;
+        int right = left + cellWidth;
+        int bottom = top + cellHeight;
+
+        int rowDiagonal = clamp(row + passed(centerY - top, bottom - centerY, 0, strideY), firstRow, lastRow);
+        int rowStraight = clamp(row + passed(centerY - top, bottom - centerY, overlap, strideY), firstRow, lastRow);
+        int colDiagonal = clamp(col + passed(centerX - left, right - centerX, 0, strideX), 0, columns - 1);
+        int colStraight = clamp(col + passed(centerX - left, right - centerX, overlap, strideX), 0, columns - 1);
+
+        int target = -1;
+        if (rowDiagonal != row && colDiagonal != col) {
+            target = Math.max(target, lastIn(low(row, rowDiagonal), high(row, rowDiagonal),
+                    low(col, colDiagonal), high(col, colDiagonal)));
+        }
+        if (rowStraight != row) {
+            target = Math.max(target, lastIn(low(row, rowStraight), high(row, rowStraight), col, col));
+        }
+        if (colStraight != col) {
+            target = Math.max(target, lastIn(row, row, low(col, colStraight), high(col, colStraight)));
+        }
+        return target;
+    }
+
+    /**
+     * Get the number of cells the center has passed the near edge of, forwards as a positive count or backwards as a
+     * negative count
+     *
+     * @param fromStart the distance of the center from the start edge of the dragged cell
+     * @param fromEnd the distance of the center from the end edge of the dragged cell
+     * @param overlap the extra distance past the near edge
+     * @param stride the distance between two cells
+     * @return the signed number of cells passed
+     */
+    private static int passed(int fromStart, int fromEnd, int overlap, int stride) {
+        int forwards = Math.floorDiv(fromStart - overlap - 1, stride);
+        if (forwards > 0) {
+            return forwards;
+        }
+        int backwards = Math.floorDiv(fromEnd - overlap - 1, stride);
+        return backwards > 0 ? -backwards : 0;
+    }
+
+    /**
+     * Get the highest visible position in a rectangle of cells
+     *
+     * @param fromRow the first row
+     * @param toRow the last row
+     * @param fromCol the first column
+     * @param toCol the last column
+     * @return the position or -1 if no cell of the rectangle is visible
+     */
+    private int lastIn(int fromRow, int toRow, int fromCol, int toCol) {
+        int row = Math.min(toRow, lastPosition / columns);
+        int last = Math.min(row * columns + toCol, lastPosition);
+        if (last % columns < fromCol) {
+            // the last row is short of the rectangle, the row before is full
+            row--;
+            last = row * columns + toCol;
+        }
+        return row >= fromRow && last >= firstPosition ? last : -1;
+    }
+
+    /** Get the lowest of the rows or columns from next to a start up to an end */
+    private static int low(int start, int end) {
+        return end > start ? start + 1 : end;
+    }
+
+    /** Get the highest of the rows or columns from next to a start up to an end */
+    private static int high(int start, int end) {
+        return end > start ? end : start - 1;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.jigdraw.draw.util;
 
+import android.graphics.Rect;
 import android.view.View;
 
 public final class GridUtil {
@@ -29,4 +30,25 @@ public final class GridUtil {
     public static float getViewY(View view) {
         return Math.abs((view.getBottom() - view.getTop()) / 2);
     }
+
+    /**
+     * Get the bounds of a tile in the original image, shared by the slicing at creation and the cutting at load so
+     * that both produce the same tiles.  The pixels left over when the image size is not a multiple of the grid size
+     * are dropped from the right and bottom edges.
+     *
+     * @param width the original image width
+     * @param height the original image height
+     * @param grid the number of tiles per row and per column
+     * @param row the tile row
+     * @param col the tile column
+     * @return the tile bounds
+     */
+    public static Rect tileRect(int width, int height, int grid, int row, int col) {
+        int tileWidth = width / grid;
+        int tileHeight = height / grid;
+        int left = col * tileWidth;
+        int top = row * tileHeight;
+
+        return new Rect(left, top, left + tileWidth, top + tileHeight);
+    }
 }
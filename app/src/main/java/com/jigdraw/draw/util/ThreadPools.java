@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Shared worker pools.  The compute pool has one thread per core and is meant for cpu bound work like encoding and
+ * decoding images, never for blocking io.  The io pool has a few threads for database and file calls, which fan their
+ * decoding out to the compute pool.  The results of a batch come back in the order of its tasks no matter which
+ * thread ran them.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public final class ThreadPools {
+
+    /** Number of cores, the size of the compute pool */
+    public static final int CORES = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** Size of the io pool, one save and one load can run at the same time on the write ahead log */
+    public static final int IO_THREADS = 2;
+
+    private ThreadPools() {}
+
+    /**
+     * Get the compute pool, created on first use
+     *
+     * @return the compute pool
+     */
+    public static ExecutorService compute() {
+        return ComputeHolder.POOL;
+    }
+
+    /**
+     * Get the io pool, created on first use
+     *
+     * @return the io pool
+     */
+    public static ExecutorService io() {
+        return IoHolder.POOL;
+    }
+
+    /**
+     * Get an executor running on the main thread, to hand results back to the views
+     *
+     * @return the main thread executor
+     */
+    public static Executor mainThread() {
+        return MainHolder.EXECUTOR;
+    }
+
+    /**
+     * Run all the tasks and wait for them to finish
+     *
+     * @param executor the executor to run the tasks on
+     * @param tasks the tasks
+     * @param <T> the result type
+     * @return the results in the order of the tasks
+     * @throws CancellationException if the calling thread is interrupted, the tasks still running are cancelled
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Run tasks as they are produced with at most a window of them in flight, the results are handed to the consumer on
+     * the calling thread in the order of the tasks.  The producer is also called on the calling thread.
+     *
+     * @param executor the executor to run the tasks on
+     * @param producer gives the next task, null once there are no more
+     * @param window the maximum number of tasks submitted and not yet consumed
+     * @param consumer takes the results
+     * @param <T> the result type
+     * @return the number of results
+     * @throws CancellationException if the calling thread is interrupted, the tasks in flight are cancelled
+     */
+    public static <T> int runOrdered(ExecutorService executor, Supplier<Callable<T>> producer, int window,
+                                     Consumer<T> consumer) {
+        Deque<Future<T>> inFlight = new ArrayDeque<>(window);
+        int count = 0;
+        try {
+            Callable<T> task;
+            while ((task = producer.get()) != null) {
+                inFlight.add(executor.submit(task));
+                if (inFlight.size() >= window) {
+                    consumer.accept(await(inFlight.poll()));
+                    count++;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                consumer.accept(await(inFlight.poll()));
+                count++;
+            }
+        } finally {
+            for (Future<T> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Wait for the result of a task
+     *
+     * @param future the task
+     * @param <T> the result type
+     * @return the result
+     * @throws CancellationException if the task was cancelled or the calling thread is interrupted, the task is then
+     * cancelled too
+     */
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static CancellationException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        CancellationException cancelled = new CancellationException("interrupted while waiting for tasks");
+        cancelled.initCause(e);
+        return cancelled;
+    }
+
+    /**
+     * Create a factory of named daemon threads
+     *
+     * @param name the thread name prefix
+     * @return the thread factory
+     */
+    public static ThreadFactory threadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Holder so the pool is only created when first used */
+    private static final class ComputeHolder {
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(CORES,
+                threadFactory("jigsaw-compute"));
+    }
+
+    /** Holder so the pool is only created when first used */
+    private static final class IoHolder {
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(IO_THREADS,
+                threadFactory("jigsaw-io"));
+    }
+
+    /** Holder so the handler is only created when first used */
+    private static final class MainHolder {
+        private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+        private static final Executor EXECUTOR = HANDLER::post;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.views;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.helper.ItemTouchHelper;
+import android.util.AttributeSet;
+
+import com.jigdraw.draw.adapter.OrderableAdapter;
+
+/**
+ * Puzzle board backed by a recycler view, alongside {@link JigsawGridView}.  The board lays the tiles out in as many
+ * columns as its {@link OrderableAdapter} has, and a long press starts dragging a tile: hovering it over another tile
+ * swaps the two through {@link OrderableAdapter#reorderItems(int, int)} when the adapter allows it.  Drags and drops
+ * are reported through the same listeners as the grid view.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class JigsawBoardView
+        extends RecyclerView {
+
+    private JigsawGridView.OnDragListener dragListener;
+    private JigsawGridView.OnDropListener dropListener;
+
+    public JigsawBoardView(Context context) {
+        super(context);
+        init();
+    }
+
+    public JigsawBoardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public JigsawBoardView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        setHasFixedSize(true);
+        new ItemTouchHelper(new SwapCallback()).attachToRecyclerView(this);
+    }
+
+    /**
+     * Set the adapter, it must be an {@link OrderableAdapter} which gives the number of columns
+     *
+     * @param adapter the adapter
+     */
+    @Override
+    public void setAdapter(Adapter adapter) {
+        if (!(adapter instanceof OrderableAdapter)) {
+            throw new IllegalArgumentException("the board needs an orderable adapter");
+        }
+        setLayoutManager(new GridLayoutManager(getContext(), ((OrderableAdapter) adapter).getColumnCount()));
+        super.setAdapter(adapter);
+    }
+
+    public void setOnDragListener(JigsawGridView.OnDragListener dragListener) {
+        this.dragListener = dragListener;
+    }
+
+    public void setOnDropListener(JigsawGridView.OnDropListener dropListener) {
+        this.dropListener = dropListener;
+    }
+
+    private OrderableAdapter getOrderableAdapter() {
+        return (OrderableAdapter) getAdapter();
+    }
+
+    /**
+     * Drags tiles in every direction and swaps them with the tile they hover, swiping is off
+     */
+    private class SwapCallback
+            extends ItemTouchHelper.Callback {
+
+        @Override
+        public int getMovementFlags(@NonNull RecyclerView recyclerView, @NonNull ViewHolder viewHolder) {
+            int dragFlags = ItemTouchHelper.UP | ItemTouchHelper.DOWN | ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT;
+            return makeMovementFlags(dragFlags, 0);
+        }
+
+        @Override
+        public boolean onMove(@NonNull RecyclerView recyclerView, @NonNull ViewHolder viewHolder,
+                              @NonNull ViewHolder target) {
+            int from = viewHolder.getAdapterPosition();
+            int to = target.getAdapterPosition();
+            if (from == NO_POSITION || to == NO_POSITION || !getOrderableAdapter().canReorder(to)) {
+                return false;
+            }
+            getOrderableAdapter().reorderItems(from, to);
+            if (dragListener != null) {
+                dragListener.onDragPositionsChanged(from, to);
+            }
+            return true;
+        }
+
+        @Override
+        public void onSelectedChanged(ViewHolder viewHolder, int actionState) {
+            super.onSelectedChanged(viewHolder, actionState);
+            if (actionState == ItemTouchHelper.ACTION_STATE_DRAG && dragListener != null) {
+                dragListener.onDragStarted(viewHolder.getAdapterPosition());
+            }
+        }
+
+        @Override
+        public void clearView(@NonNull RecyclerView recyclerView, @NonNull ViewHolder viewHolder) {
+            super.clearView(recyclerView, viewHolder);
+            if (dropListener != null) {
+                dropListener.onActionDrop();
+            }
+        }
+
+        @Override
+        public void onSwiped(@NonNull ViewHolder viewHolder, int direction) {
+        }
+    }
+}
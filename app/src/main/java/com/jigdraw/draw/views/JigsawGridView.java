@@ -29,13 +29,14 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
@@ -47,15 +48,19 @@ import android.widget.ListAdapter;
 
 import com.jigdraw.draw.R;
 import com.jigdraw.draw.adapter.OrderableAdapter;
-import com.jigdraw.draw.util.GridUtil;
+import com.jigdraw.draw.model.BoardModel;
+import com.jigdraw.draw.util.GridGeometry;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
 public class JigsawGridView
         extends GridView {
 
+    /** Class name for logging */
+    private static final String TAG = "JigsawGridView";
+
     private BitmapDrawable mHoverCell;
     private Rect mHoverCellCurrentBounds;
     private Rect mHoverCellOriginalBounds;
@@ -71,7 +76,20 @@ public class JigsawGridView
     // used to distinguish straight line and diagonal switching
     private int mOverlapIfSwitchStraightLine;
 
-    private List<Long> idList = new ArrayList<>();
+    private final GridGeometry mGeometry = new GridGeometry();
+
+    // move events only record the pointer, the drag is applied once per frame
+    private boolean mDragFramePending;
+    private final Choreographer.FrameCallback mDragFrameCallback = frameTimeNanos -> {
+        mDragFramePending = false;
+        applyDrag();
+    };
+
+    // main thread cost of the current drag, logged on drop
+    private int mDragMoveEvents;
+    private int mDragFrames;
+    private long mDragNanos;
+    private long mDragMaxNanos;
 
     private long mMobileItemId = INVALID_ID;
 
@@ -149,7 +167,6 @@ public class JigsawGridView
 
         void checkAndHandleFirstVisibleCellChange() {
             if (mCurrentFirstVisibleItem != mPreviousFirstVisibleItem && (mCellIsMobile && mMobileItemId != INVALID_ID)) {
-                updateNeighborViewsForId(mMobileItemId);
                 handleCellSwitch();
             }
         }
@@ -160,7 +177,6 @@ public class JigsawGridView
             int previousLastVisibleItem = mPreviousFirstVisibleItem
                     + mPreviousVisibleItemCount;
             if (currentLastVisibleItem != previousLastVisibleItem && (mCellIsMobile && mMobileItemId != INVALID_ID)) {
-                updateNeighborViewsForId(mMobileItemId);
                 handleCellSwitch();
             }
         }
@@ -242,27 +258,20 @@ public class JigsawGridView
 
                 int pointerIndex = event.findPointerIndex(mActivePointerId);
 
+                // the latest sample is all the drag needs, the switch target is resolved from where the hover
+                // cell ends up so the historical samples batched into this event can be skipped
                 mLastEventY = (int) event.getY(pointerIndex);
                 mLastEventX = (int) event.getX(pointerIndex);
-                int deltaY = mLastEventY - mDownY;
-                int deltaX = mLastEventX - mDownX;
 
                 if (mCellIsMobile) {
-                    mHoverCellCurrentBounds.offsetTo(
-                            mHoverCellOriginalBounds.left
-                                    + deltaX + mTotalOffsetX,
-                            mHoverCellOriginalBounds.top
-                                    + deltaY + mTotalOffsetY);
-                    mHoverCell.setBounds(mHoverCellCurrentBounds);
-                    invalidate();
-                    handleCellSwitch();
-                    mIsMobileScrolling = false;
-                    handleMobileCellScroll();
+                    mDragMoveEvents++;
+                    scheduleDrag();
                     return false;
                 }
                 break;
 
             case MotionEvent.ACTION_UP:
+                finishDrag(true);
                 touchEventsEnded();
 
                 if (mHoverCell != null && mDropListener != null) {
@@ -271,6 +280,7 @@ public class JigsawGridView
                 break;
 
             case MotionEvent.ACTION_CANCEL:
+                finishDrag(false);
                 touchEventsCancelled();
 
                 if (mHoverCell != null && mDropListener != null) {
@@ -284,6 +294,7 @@ public class JigsawGridView
                         .ACTION_POINTER_INDEX_SHIFT;
                 final int pointerId = event.getPointerId(pointerIndex);
                 if (pointerId == mActivePointerId) {
+                    finishDrag(true);
                     touchEventsEnded();
                 }
                 break;
@@ -295,6 +306,75 @@ public class JigsawGridView
         return super.onTouchEvent(event);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        finishDrag(false);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Schedule the drag to be applied on the next frame, move events that come in before it only update the pointer
+     * position
+     */
+    private void scheduleDrag() {
+        if (!mDragFramePending) {
+            mDragFramePending = true;
+            Choreographer.getInstance().postFrameCallback(mDragFrameCallback);
+        }
+    }
+
+    /**
+     * Move the hover cell to the latest pointer position, switch cells and scroll at the edges if needed
+     */
+    private void applyDrag() {
+        if (!mCellIsMobile) {
+            return;
+        }
+        long start = System.nanoTime();
+        int deltaY = mLastEventY - mDownY;
+        int deltaX = mLastEventX - mDownX;
+        mHoverCellCurrentBounds.offsetTo(
+                mHoverCellOriginalBounds.left
+                        + deltaX + mTotalOffsetX,
+                mHoverCellOriginalBounds.top
+                        + deltaY + mTotalOffsetY);
+        mHoverCell.setBounds(mHoverCellCurrentBounds);
+        invalidate();
+        handleCellSwitch();
+        mIsMobileScrolling = false;
+        handleMobileCellScroll();
+
+        long nanos = System.nanoTime() - start;
+        mDragFrames++;
+        mDragNanos += nanos;
+        mDragMaxNanos = Math.max(mDragMaxNanos, nanos);
+    }
+
+    /**
+     * End the frame driven drag and log what it cost per frame.  Each move event used to apply the drag on its own, so
+     * the number of move events against the number of frames shows how much work the coalescing saves.
+     *
+     * @param apply true to apply the last pointer position if it has not been yet
+     */
+    private void finishDrag(boolean apply) {
+        if (mDragFramePending) {
+            Choreographer.getInstance().removeFrameCallback(mDragFrameCallback);
+            mDragFramePending = false;
+            if (apply) {
+                applyDrag();
+            }
+        }
+        if (mDragFrames > 0) {
+            Log.d(TAG, String.format(Locale.US,
+                    "drag: %d move events in %d frames, %.3f ms per frame, %.3f ms max",
+                    mDragMoveEvents, mDragFrames, mDragNanos / 1e6 / mDragFrames, mDragMaxNanos / 1e6));
+        }
+        mDragMoveEvents = 0;
+        mDragFrames = 0;
+        mDragNanos = 0;
+        mDragMaxNanos = 0;
+    }
+
     public void setOnDropListener(OnDropListener dropListener) {
         this.mDropListener = dropListener;
     }
@@ -326,7 +406,6 @@ public class JigsawGridView
             if (isPostHoneycomb())
                 selectedView.setVisibility(View.INVISIBLE);
             mCellIsMobile = true;
-            updateNeighborViewsForId(mMobileItemId);
             if (mDragListener != null) {
                 mDragListener.onDragStarted(position);
             }
@@ -352,17 +431,6 @@ public class JigsawGridView
         return drawable;
     }
 
-    private void updateNeighborViewsForId(long itemId) {
-        idList.clear();
-        int draggedPos = getPositionForID(itemId);
-        for (int pos = getFirstVisiblePosition(); pos <=
-                getLastVisiblePosition(); pos++) {
-            if (draggedPos != pos && getAdapterInterface().canReorder(pos)) {
-                idList.add(getId(pos));
-            }
-        }
-    }
-
     private Bitmap getBitmapFromView(View v) {
         Bitmap bitmap = Bitmap.createBitmap(v.getWidth(), v.getHeight(),
                 Bitmap.Config.ARGB_8888);
@@ -372,12 +440,14 @@ public class JigsawGridView
     }
 
     public int getPositionForID(long itemId) {
-        View v = getViewForId(itemId);
-        if (v == null) {
+        if (getAdapter() == null) {
+            return -1;
+        }
+        BoardModel board = getAdapterInterface().getBoardModel();
+        if (itemId < 0 || itemId >= board.size()) {
             return -1;
-        } else {
-            return getPositionForView(v);
         }
+        return board.positionOf((int) itemId);
     }
 
     private OrderableAdapter getAdapterInterface() {
@@ -385,21 +455,23 @@ public class JigsawGridView
     }
 
     private long getId(int position) {
-        return getAdapter().getItemId(position);
+        return getAdapterInterface().getBoardModel().tileAt(position);
     }
 
+    /**
+     * Get the child view showing an item.  The child index comes straight from the board model and the first visible
+     * position instead of a scan of the children, which the drag path does for every neighbor on every move.
+     *
+     * @param itemId the item id
+     * @return the view or null if the item is not on screen
+     */
     public View getViewForId(long itemId) {
-        int firstVisiblePosition = getFirstVisiblePosition();
-        ListAdapter adapter = getAdapter();
-        for (int i = 0; i < getChildCount(); i++) {
-            View v = getChildAt(i);
-            int position = firstVisiblePosition + i;
-            long id = adapter.getItemId(position);
-            if (id == itemId) {
-                return v;
-            }
+        if (itemId < 0 || itemId > Integer.MAX_VALUE || getAdapter() == null) {
+            return null;
         }
-        return null;
+        int index = getAdapterInterface().getBoardModel()
+                .childIndexOf((int) itemId, getFirstVisiblePosition(), getChildCount());
+        return index == -1 ? null : getChildAt(index);
     }
 
     public void stopEditMode() {
@@ -522,7 +594,6 @@ public class JigsawGridView
     }
 
     private void reset(View mobileView) {
-        idList.clear();
         mMobileItemId = INVALID_ID;
         mobileView.setVisibility(View.VISIBLE);
         mHoverCell = null;
@@ -557,59 +628,16 @@ public class JigsawGridView
         final int deltaXTotal = mHoverCellOriginalBounds.centerX()
                 + mTotalOffsetX + deltaX;
         mMobileView = getViewForId(mMobileItemId);
-        View targetView = null;
-        float vX = 0;
-        float vY = 0;
-        Point mobileColumnRowPair = getColumnAndRowForView(mMobileView);
-        for (Long id : idList) {
-            View view = getViewForId(id);
-            if (view != null) {
-                Point targetColumnRowPair = getColumnAndRowForView(view);
-                if (aboveRight(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal < view.getBottom()
-                        && deltaXTotal > view.getLeft()
-                        || aboveLeft(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal < view.getBottom()
-                        && deltaXTotal < view.getRight()
-                        || belowRight(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal > view.getTop()
-                        && deltaXTotal > view.getLeft()
-                        || belowLeft(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal > view.getTop()
-                        && deltaXTotal < view.getRight()
-                        || above(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal < view.getBottom()
-                        - mOverlapIfSwitchStraightLine
-                        || below(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaYTotal > view.getTop()
-                        + mOverlapIfSwitchStraightLine
-                        || right(targetColumnRowPair, mobileColumnRowPair)
-                        && deltaXTotal > view.getLeft()
-                        + mOverlapIfSwitchStraightLine || left(
-                        targetColumnRowPair, mobileColumnRowPair)
-                        && deltaXTotal < view.getRight()
-                        - mOverlapIfSwitchStraightLine) {
-                    float xDiff = Math.abs(GridUtil.getViewX(view)
-                            - GridUtil.getViewX(mMobileView));
-                    float yDiff = Math.abs(GridUtil.getViewY(view)
-                            - GridUtil.getViewY(mMobileView));
-                    if (xDiff >= vX && yDiff >= vY) {
-                        vX = xDiff;
-                        vY = yDiff;
-                        targetView = view;
-                    }
-                }
-            }
+        final int originalPosition = getPositionForID(mMobileItemId);
+        if (mMobileView == null || !updateGeometry()) {
+            return;
         }
-        if (targetView != null) {
-            final int originalPosition = getPositionForView(mMobileView);
-            int targetPosition = getPositionForView(targetView);
-
+        int targetPosition = mGeometry.switchTarget(originalPosition,
+                deltaXTotal, deltaYTotal, mOverlapIfSwitchStraightLine);
+        if (targetPosition != -1) {
             final OrderableAdapter adapter = getAdapterInterface();
-            if (targetPosition == INVALID_POSITION
-                    || !adapter.canReorder(originalPosition)
+            if (!adapter.canReorder(originalPosition)
                     || !adapter.canReorder(targetPosition)) {
-                updateNeighborViewsForId(mMobileItemId);
                 return;
             }
             reorderElements(originalPosition, targetPosition);
@@ -630,66 +658,32 @@ public class JigsawGridView
                 // Android L
                 switchCellAnimator = new LSwitchCellAnimator(deltaX, deltaY);
 
-            updateNeighborViewsForId(mMobileItemId);
-
             switchCellAnimator.animateSwitchCell(originalPosition,
                     targetPosition);
         }
     }
 
-    private boolean belowLeft(Point targetColumnRowPair,
-                              Point mobileColumnRowPair) {
-        return targetColumnRowPair.y > mobileColumnRowPair.y
-                && targetColumnRowPair.x < mobileColumnRowPair.x;
-    }
-
-    private boolean belowRight(Point targetColumnRowPair,
-                               Point mobileColumnRowPair) {
-        return targetColumnRowPair.y > mobileColumnRowPair.y
-                && targetColumnRowPair.x > mobileColumnRowPair.x;
-    }
-
-    private boolean aboveLeft(Point targetColumnRowPair,
-                              Point mobileColumnRowPair) {
-        return targetColumnRowPair.y < mobileColumnRowPair.y
-                && targetColumnRowPair.x < mobileColumnRowPair.x;
-    }
-
-    private boolean aboveRight(Point targetColumnRowPair,
-                               Point mobileColumnRowPair) {
-        return targetColumnRowPair.y < mobileColumnRowPair.y
-                && targetColumnRowPair.x > mobileColumnRowPair.x;
-    }
-
-    private boolean above(Point targetColumnRowPair, Point
-            mobileColumnRowPair) {
-        return targetColumnRowPair.y < mobileColumnRowPair.y
-                && targetColumnRowPair.x == mobileColumnRowPair.x;
-    }
-
-    private boolean below(Point targetColumnRowPair, Point
-            mobileColumnRowPair) {
-        return targetColumnRowPair.y > mobileColumnRowPair.y
-                && targetColumnRowPair.x == mobileColumnRowPair.x;
-    }
-
-    private boolean right(Point targetColumnRowPair, Point
-            mobileColumnRowPair) {
-        return targetColumnRowPair.y == mobileColumnRowPair.y
-                && targetColumnRowPair.x > mobileColumnRowPair.x;
-    }
-
-    private boolean left(Point targetColumnRowPair, Point mobileColumnRowPair) {
-        return targetColumnRowPair.y == mobileColumnRowPair.y
-                && targetColumnRowPair.x < mobileColumnRowPair.x;
-    }
-
-    private Point getColumnAndRowForView(View view) {
-        int pos = getPositionForView(view);
+    /**
+     * Update the grid geometry from the laid out children, the strides are measured between children so that the
+     * spacing and any stretching are taken into account
+     *
+     * @return true if there are children to measure
+     */
+    private boolean updateGeometry() {
+        View first = getChildAt(0);
+        if (first == null) {
+            return false;
+        }
         int columns = getColumnCount();
-        int column = pos % columns;
-        int row = pos / columns;
-        return new Point(column, row);
+        View nextInRow = columns > 1 ? getChildAt(1) : null;
+        View nextInColumn = getChildAt(columns);
+        int strideX = nextInRow != null ? nextInRow.getLeft() - first.getLeft()
+                : first.getWidth() + getHorizontalSpacing();
+        int strideY = nextInColumn != null ? nextInColumn.getTop() - first.getTop()
+                : first.getHeight() + getVerticalSpacing();
+        mGeometry.setRange(columns, getFirstVisiblePosition(), getLastVisiblePosition());
+        mGeometry.setCells(first.getLeft(), first.getTop(), first.getWidth(), first.getHeight(), strideX, strideY);
+        return true;
     }
 
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
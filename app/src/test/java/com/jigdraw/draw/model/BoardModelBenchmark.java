@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of the per move event lookups of the grid view drag path.  On every move the grid view looks up the child
+ * view of each neighbor of the dragged tile.  This compares scanning the children for each neighbor, as the grid view
+ * used to, with the child index from the board model, on a fully visible 16x16 and 32x32 board.
+ * <p>
+ * The timings depend on the machine so the benchmark is left out of the unit tests and run by hand, the correctness
+ * of the child index is covered by {@link BoardModelTest}.  The timings of each board are logged under the name of
+ * its benchmark.
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+@Ignore("benchmark, run by hand")
+public class BoardModelBenchmark {
+    private static final int WARM_UP_EVENTS = 2_000;
+    private static final int MEASURED_EVENTS = 500;
+    private static final Logger LOG = Logger.getLogger(BoardModelBenchmark.class.getName());
+
+    @Rule
+    public final TestName name = new TestName();
+
+    @Test
+    public void benchmark16x16() {
+        run(16);
+    }
+
+    @Test
+    public void benchmark32x32() {
+        run(32);
+    }
+
+    private void run(int columns) {
+        int size = columns * columns;
+        BoardModel board = shuffled(size);
+        int dragged = board.tileAt(size / 2);
+
+        long scan = 0;
+        long indexed = 0;
+        for (int i = 0; i < WARM_UP_EVENTS; i++) {
+            scan += scanEvent(board, dragged);
+            indexed += indexedEvent(board, dragged);
+        }
+        assertEquals(scan, indexed);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            scan += scanEvent(board, dragged);
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            indexed += indexedEvent(board, dragged);
+        }
+        long indexedNanos = System.nanoTime() - start;
+
+        assertEquals(scan, indexed);
+        LOG.info(String.format("%s: %dx%d board, per move event: child scan %d ns, child index %d ns",
+                name.getMethodName(), columns, columns, scanNanos / MEASURED_EVENTS, indexedNanos / MEASURED_EVENTS));
+    }
+
+    /** Look up every neighbor's child by scanning the children, quadratic in the board size */
+    private static long scanEvent(BoardModel board, int dragged) {
+        long sum = 0;
+        for (int tile = 0; tile < board.size(); tile++) {
+            if (tile == dragged) {
+                continue;
+            }
+            for (int child = 0; child < board.size(); child++) {
+                if (board.tileAt(child) == tile) {
+                    sum += child;
+                    break;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /** Look up every neighbor's child by the board model's child index, linear in the board size */
+    private static long indexedEvent(BoardModel board, int dragged) {
+        long sum = 0;
+        for (int tile = 0; tile < board.size(); tile++) {
+            if (tile != dragged) {
+                sum += board.childIndexOf(tile, 0, board.size());
+            }
+        }
+        return sum;
+    }
+
+    private static BoardModel shuffled(int size) {
+        BoardModel board = new BoardModel(size);
+        Random random = new Random(7);
+        for (int i = size - 1; i > 0; i--) {
+            board.swap(i, random.nextInt(i + 1));
+        }
+        return board;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Unit test for the board model
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class BoardModelTest {
+    private static final int SIZE = 32 * 32;
+    private static final int OPERATIONS = 200_000;
+
+    @Test
+    public void testStartsInOrder() {
+        BoardModel board = new BoardModel(16);
+        for (int i = 0; i < board.size(); i++) {
+            assertEquals(i, board.tileAt(i));
+            assertEquals(i, board.positionOf(i));
+        }
+    }
+
+    @Test
+    public void testSwapKeepsBothDirectionsInSync() {
+        BoardModel board = new BoardModel(new int[]{2, 0, 3, 1});
+        board.swap(0, 3);
+
+        assertEquals(1, board.tileAt(0));
+        assertEquals(2, board.tileAt(3));
+        assertEquals(0, board.positionOf(1));
+        assertEquals(3, board.positionOf(2));
+        assertInverse(board);
+    }
+
+    @Test
+    public void testRandomSwapsStayAPermutation() {
+        BoardModel board = new BoardModel(SIZE);
+        Random random = new Random(42);
+        for (int i = 0; i < OPERATIONS; i++) {
+            board.swap(random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        assertInverse(board);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsRepeatedTile() {
+        new BoardModel(new int[]{0, 1, 1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTileOutOfRange() {
+        new BoardModel(new int[]{0, 3, 1});
+    }
+
+    @Test
+    public void testChildIndexFollowsSwapsAndFirstPosition() {
+        BoardModel board = new BoardModel(16);
+        board.swap(2, 9);
+
+        assertEquals(9, board.childIndexOf(2, 0, 16));
+        assertEquals(5, board.childIndexOf(2, 4, 8));
+        assertEquals(-1, board.childIndexOf(9, 4, 8));
+        assertEquals(-1, board.childIndexOf(15, 4, 8));
+        assertEquals(-1, board.childIndexOf(16, 0, 16));
+        assertEquals(-1, board.childIndexOf(-1, 0, 16));
+    }
+
+    @Test
+    public void testSwapsAndLookupsDoNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        BoardModel board = new BoardModel(SIZE);
+        long threadId = Thread.currentThread().getId();
+        // warm up so the loop below runs compiled
+        long sum = exercise(board);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sum += exercise(board);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // a boxed id per lookup would take megabytes, the slack is for the measurement itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+        assertTrue(sum >= 0);
+    }
+
+    private static long exercise(BoardModel board) {
+        long sum = 0;
+        int position = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int other = (position * 31 + 7) % SIZE;
+            board.swap(position, other);
+            sum += board.positionOf(board.tileAt(other));
+            position = other;
+        }
+        return sum;
+    }
+
+    private static void assertInverse(BoardModel board) {
+        for (int position = 0; position < board.size(); position++) {
+            assertEquals(position, board.positionOf(board.tileAt(position)));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018. Jay Paulynice (jay.paulynice@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jigdraw.draw.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit test for the grid geometry switch target
+ *
+ * @author Jay Paulynice (jay.paulynice@gmail.com)
+ */
+public class GridGeometryTest {
+    private static final int CELL = 100;
+    private static final int SPACING = 4;
+    private static final int STRIDE = CELL + SPACING;
+    private static final int OVERLAP = 20;
+
+    @Test
+    public void testNoSwitchInsideTheDraggedCell() {
+        GridGeometry geometry = geometry(4, 0, 15);
+        int center = STRIDE + CELL / 2;
+
+        assertEquals(-1, geometry.switchTarget(5, center, center, OVERLAP));
+    }
+
+    @Test
+    public void testStraightSwitchNeedsTheOverlap() {
+        GridGeometry geometry = geometry(4, 0, 15);
+        int centerY = STRIDE + CELL / 2;
+
+        assertEquals(-1, geometry.switchTarget(5, 2 * STRIDE + OVERLAP, centerY, OVERLAP));
+        assertEquals(6, geometry.switchTarget(5, 2 * STRIDE + OVERLAP + 1, centerY, OVERLAP));
+    }
+
+    @Test
+    public void testDiagonalSwitchNeedsNoOverlap() {
+        GridGeometry geometry = geometry(4, 0, 15);
+
+        assertEquals(10, geometry.switchTarget(5, 2 * STRIDE + 1, 2 * STRIDE + 1, OVERLAP));
+    }
+
+    @Test
+    public void testNoSwitchPastTheEdgeOfTheGrid() {
+        GridGeometry geometry = geometry(4, 0, 15);
+
+        assertEquals(-1, geometry.switchTarget(3, 4 * STRIDE + CELL, CELL / 2, OVERLAP));
+        assertEquals(-1, geometry.switchTarget(0, -CELL, -CELL, OVERLAP));
+    }
+
+    @Test
+    public void testMatchesNeighborScanOnFullGrid() {
+        assertMatchesNeighborScan(geometry(16, 0, 255), 16, 0, 255);
+    }
+
+    @Test
+    public void testMatchesNeighborScanOnScrolledGrid() {
+        assertMatchesNeighborScan(geometry(8, 16, 53), 8, 16, 53);
+    }
+
+    private static void assertMatchesNeighborScan(GridGeometry geometry, int columns, int first, int last) {
+        Random random = new Random(42);
+        int span = 3 * STRIDE;
+        for (int i = 0; i < 20_000; i++) {
+            int position = first + random.nextInt(last - first + 1);
+            int left = (position % columns) * STRIDE;
+            int top = (position / columns - first / columns) * STRIDE;
+            int centerX = left + CELL / 2 + random.nextInt(2 * span) - span;
+            int centerY = top + CELL / 2 + random.nextInt(2 * span) - span;
+
+            assertEquals("position " + position + " center " + centerX + "," + centerY,
+                    scanNeighbors(columns, first, last, position, centerX, centerY),
+                    geometry.switchTarget(position, centerX, centerY, OVERLAP));
+        }
+    }
+
+    /**
+     * The switch target as the grid view found it, testing every visible neighbor against the direction predicates.
+     * The views are all the same size so the distance tie break always takes the later candidate.
+     */
+    private static int scanNeighbors(int columns, int first, int last, int position, int centerX, int centerY) {
+        int mobileCol = position % columns;
+        int mobileRow = position / columns;
+        int target = -1;
+        for (int pos = first; pos <= last; pos++) {
+            if (pos == position) {
+                continue;
+            }
+            int col = pos % columns;
+            int row = pos / columns;
+            int left = col * STRIDE;
+            int top = (row - first / columns) * STRIDE;
+            int right = left + CELL;
+            int bottom = top + CELL;
+            if (row < mobileRow && col > mobileCol && centerY < bottom && centerX > left
+                    || row < mobileRow && col < mobileCol && centerY < bottom && centerX < right
+                    || row > mobileRow && col > mobileCol && centerY > top && centerX > left
+                    || row > mobileRow && col < mobileCol && centerY > top && centerX < right
+                    || row < mobileRow && col == mobileCol && centerY < bottom - OVERLAP
+                    || row > mobileRow && col == mobileCol && centerY > top + OVERLAP
+                    || row == mobileRow && col > mobileCol && centerX > left + OVERLAP
+                    || row == mobileRow && col < mobileCol && centerX < right - OVERLAP) {
+                target = pos;
+            }
+        }
+        return target;
+    }
+
+    private static GridGeometry geometry(int columns, int first, int last) {
+        GridGeometry geometry = new GridGeometry();
+        geometry.setRange(columns, first, last);
+        geometry.setCells(0, 0, CELL, CELL, STRIDE, STRIDE);
+        return geometry;
+    }
+}